@@ -0,0 +1,73 @@
+package org.fiolino.searcher.solr;
+
+import org.apache.lucene.search.Query;
+import org.apache.solr.common.params.SolrParams;
+import org.apache.solr.request.SolrQueryRequest;
+import org.apache.solr.schema.FieldType;
+import org.apache.solr.schema.SchemaField;
+import org.apache.solr.schema.TrieIntField;
+import org.apache.solr.schema.TrieLongField;
+import org.apache.solr.search.QParser;
+import org.apache.solr.search.QParserPlugin;
+import org.apache.solr.search.SyntaxError;
+import org.roaringbitmap.longlong.Roaring64NavigableMap;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.util.Base64;
+
+/**
+ * Parses a base64 encoded Roaring bitmap of long ids into a filter on a numeric docValues field.
+ * <p>
+ * Register it in solrconfig.xml:
+ * <pre>
+ *   &lt;queryParser name="roaring" class="org.fiolino.searcher.solr.RoaringIdQParserPlugin"/&gt;
+ * </pre>
+ * Usage: <code>fq={!roaring f=item_id negate=false cache=false cost=200}OjAAAAEAAAAAAAEAEAAAAAEAAgA=</code>
+ * <p>
+ * With cache=false and a cost of at least 100, the filter runs as a post filter.
+ */
+public class RoaringIdQParserPlugin extends QParserPlugin {
+  public static final String NAME = "roaring";
+
+  @Override
+  public QParser createParser(String qstr, SolrParams localParams, SolrParams params, SolrQueryRequest req) {
+    return new QParser(qstr, localParams, params, req) {
+      @Override
+      public Query parse() throws SyntaxError {
+        String fieldName = localParams.get("f");
+        if (fieldName == null) {
+          throw new SyntaxError("Missing field name f");
+        }
+        SchemaField field = req.getSchema().getFieldOrNull(fieldName);
+        if (field == null) {
+          throw new SyntaxError("Unknown field " + fieldName);
+        }
+        if (!field.hasDocValues() || field.multiValued() || !isNumeric(field.getType())) {
+          throw new SyntaxError(fieldName + " must be a single valued numeric field with docValues");
+        }
+        boolean negate = localParams.getBool("negate", false);
+        return new RoaringIdQuery(fieldName, decode(getString()), negate);
+      }
+    };
+  }
+
+  private static boolean isNumeric(FieldType type) {
+    return type instanceof TrieLongField || type instanceof TrieIntField;
+  }
+
+  static Roaring64NavigableMap decode(String encoded) throws SyntaxError {
+    if (encoded == null || encoded.isEmpty()) {
+      throw new SyntaxError("No ids given");
+    }
+    Roaring64NavigableMap ids = new Roaring64NavigableMap();
+    try {
+      byte[] bytes = Base64.getDecoder().decode(encoded.trim());
+      ids.deserialize(new DataInputStream(new ByteArrayInputStream(bytes)));
+    } catch (IllegalArgumentException | IOException ex) {
+      throw new SyntaxError("Invalid bitmap: " + ex.getMessage(), ex);
+    }
+    return ids;
+  }
+}
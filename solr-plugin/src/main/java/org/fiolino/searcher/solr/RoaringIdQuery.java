@@ -0,0 +1,113 @@
+package org.fiolino.searcher.solr;
+
+import org.apache.lucene.index.DocValues;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.NumericDocValues;
+import org.apache.lucene.search.ConstantScoreScorer;
+import org.apache.lucene.search.ConstantScoreWeight;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Scorer;
+import org.apache.lucene.search.TwoPhaseIterator;
+import org.apache.lucene.search.Weight;
+import org.apache.lucene.util.Bits;
+import org.apache.solr.search.DelegatingCollector;
+import org.apache.solr.search.ExtendedQueryBase;
+import org.apache.solr.search.PostFilter;
+import org.roaringbitmap.longlong.Roaring64NavigableMap;
+
+import java.io.IOException;
+
+/**
+ * Matches all documents whose docValue in the field is contained in a bitmap of ids, or not if negated.
+ * <p>
+ * As a post filter, only the documents matching all other filters are probed. Otherwise, it iterates over
+ * all documents of the index.
+ */
+public final class RoaringIdQuery extends ExtendedQueryBase implements PostFilter {
+  private final String fieldName;
+  private final Roaring64NavigableMap ids;
+  private final boolean negate;
+
+  public RoaringIdQuery(String fieldName, Roaring64NavigableMap ids, boolean negate) {
+    this.fieldName = fieldName;
+    this.ids = ids;
+    this.negate = negate;
+  }
+
+  @Override
+  public DelegatingCollector getFilterCollector(IndexSearcher searcher) {
+    return new DelegatingCollector() {
+      private Matcher matcher;
+
+      @Override
+      protected void doSetNextReader(LeafReaderContext context) throws IOException {
+        super.doSetNextReader(context);
+        matcher = new Matcher(context.reader());
+      }
+
+      @Override
+      public void collect(int doc) throws IOException {
+        if (matcher.matches(doc)) {
+          super.collect(doc);
+        }
+      }
+    };
+  }
+
+  @Override
+  public Weight createWeight(IndexSearcher searcher, boolean needsScores) {
+    return new ConstantScoreWeight(this) {
+      @Override
+      public Scorer scorer(LeafReaderContext context) throws IOException {
+        LeafReader reader = context.reader();
+        Matcher matcher = new Matcher(reader);
+        DocIdSetIterator all = DocIdSetIterator.all(reader.maxDoc());
+        return new ConstantScoreScorer(this, score(), new TwoPhaseIterator(all) {
+          @Override
+          public boolean matches() {
+            return matcher.matches(approximation.docID());
+          }
+
+          @Override
+          public float matchCost() {
+            return 10;
+          }
+        });
+      }
+    };
+  }
+
+  private final class Matcher {
+    private final NumericDocValues values;
+    private final Bits docsWithField;
+
+    Matcher(LeafReader reader) throws IOException {
+      values = DocValues.getNumeric(reader, fieldName);
+      docsWithField = DocValues.getDocsWithField(reader, fieldName);
+    }
+
+    boolean matches(int doc) {
+      boolean contained = docsWithField.get(doc) && ids.contains(values.get(doc));
+      return contained != negate;
+    }
+  }
+
+  @Override
+  public String toString(String field) {
+    return "{!" + RoaringIdQParserPlugin.NAME + " f=" + fieldName + (negate ? " negate=true" : "") + getOptions()
+            + "}" + ids.getLongCardinality() + " ids";
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    return sameClassAs(obj) && fieldName.equals(((RoaringIdQuery) obj).fieldName)
+            && negate == ((RoaringIdQuery) obj).negate && ids.equals(((RoaringIdQuery) obj).ids);
+  }
+
+  @Override
+  public int hashCode() {
+    return (classHash() * 31 + fieldName.hashCode()) * 31 + ids.hashCode() + (negate ? 1 : 0);
+  }
+}
@@ -0,0 +1,141 @@
+package org.fiolino.searcher.solr;
+
+import org.apache.solr.client.solrj.SolrQuery;
+import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.client.solrj.embedded.EmbeddedSolrServer;
+import org.apache.solr.common.SolrDocumentList;
+import org.apache.solr.common.SolrException;
+import org.apache.solr.common.SolrInputDocument;
+import org.fiolino.searcher.statement.DirectFilter;
+import org.fiolino.searcher.statement.Filter;
+import org.fiolino.searcher.statement.RoaringIdFilter;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class RoaringIdQParserPluginTest {
+  private static EmbeddedSolrServer server;
+
+  @BeforeClass
+  public static void startSolr() throws Exception {
+    Path solrHome = Paths.get(RoaringIdQParserPluginTest.class.getResource("/solr").toURI());
+    server = new EmbeddedSolrServer(solrHome, "collection1");
+    List<SolrInputDocument> docs = new ArrayList<>();
+    for (long i = 1; i <= 100; i++) {
+      SolrInputDocument doc = new SolrInputDocument();
+      doc.addField("id", "doc" + i);
+      doc.addField("item_id", i);
+      docs.add(doc);
+    }
+    SolrInputDocument withoutId = new SolrInputDocument();
+    withoutId.addField("id", "none");
+    docs.add(withoutId);
+    server.add(docs);
+    server.commit();
+  }
+
+  @AfterClass
+  public static void stopSolr() throws Exception {
+    server.close();
+  }
+
+  private static SolrDocumentList search(Filter filter) throws Exception {
+    SolrQuery query = new SolrQuery("*:*");
+    query.setRows(1000);
+    for (Filter part : filter.canonicalize().split()) {
+      part.apply(query);
+    }
+    return server.query(query).getResults();
+  }
+
+  private static List<Object> itemIds(SolrDocumentList docs) {
+    List<Object> ids = new ArrayList<>();
+    for (Object id : docs.stream().map(d -> d.getFieldValue("item_id")).sorted().toArray()) {
+      ids.add(id);
+    }
+    return ids;
+  }
+
+  @Test
+  public void testPostFilter() throws Exception {
+    SolrDocumentList docs = search(new RoaringIdFilter("item_id", "items", 3, 42, 5, 1000));
+    assertEquals(3, docs.getNumFound());
+    assertEquals("[3, 5, 42]", itemIds(docs).toString());
+  }
+
+  @Test
+  public void testNegated() throws Exception {
+    SolrDocumentList docs = search(new RoaringIdFilter("item_id", "items", 3, 42, 5).negated());
+    assertEquals(98, docs.getNumFound());
+  }
+
+  @Test
+  public void testAsNormalFilter() throws Exception {
+    Filter filter = new RoaringIdFilter("item_id", "items", 7, 8, 9).withCost(10);
+    SolrQuery query = new SolrQuery();
+    filter.apply(query);
+    String fq = query.getFilterQueries()[0];
+    assertEquals(fq, fq.indexOf("cost="), fq.lastIndexOf("cost="));
+    assertTrue(fq, fq.contains("cost=10"));
+    SolrDocumentList docs = search(filter);
+    assertEquals(3, docs.getNumFound());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testRejectsOr() {
+    new DirectFilter("id", "doc", "doc8").or(new RoaringIdFilter("item_id", "items", 7, 8, 9));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testRejectsNestedOr() {
+    Filter and = new DirectFilter("id", "doc", "doc8").and(new RoaringIdFilter("item_id", "items", 7, 8, 9));
+    and.or(new DirectFilter("id", "doc", "doc9"));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testRejectsNullValues() {
+    new RoaringIdFilter("item_id", "items", 7, 8, 9).allowsNullValues();
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testRejectsNegatedAnd() {
+    new DirectFilter("id", "doc", "doc8").and(new RoaringIdFilter("item_id", "items", 7, 8, 9)).negated();
+  }
+
+  @Test
+  public void testCombined() throws Exception {
+    Filter filter = new DirectFilter("id", "doc", "doc8", "doc9", "doc10")
+            .and(new RoaringIdFilter("item_id", "items", 7, 8, 9));
+    SolrDocumentList docs = search(filter);
+    assertEquals("[8, 9]", itemIds(docs).toString());
+  }
+
+  @Test
+  public void testLargeIdList() throws Exception {
+    List<Long> ids = new ArrayList<>();
+    for (long i = 0; i < 100000; i += 2) {
+      ids.add(i);
+    }
+    SolrDocumentList docs = search(new RoaringIdFilter("item_id", "items", ids));
+    assertEquals(50, docs.getNumFound());
+  }
+
+  @Test
+  public void testRejectsFieldsWithoutDocValues() throws Exception {
+    try {
+      search(new RoaringIdFilter("tags", "tags", 1, 2));
+    } catch (SolrException | SolrServerException ex) {
+      assertTrue(ex.getMessage(), ex.getMessage().contains("docValues"));
+      return;
+    }
+    throw new AssertionError("tags has no docValues");
+  }
+}
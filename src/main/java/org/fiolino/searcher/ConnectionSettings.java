@@ -0,0 +1,117 @@
+package org.fiolino.searcher;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits and timeouts of the HTTP connection pool that a {@link Realm} shares between its Solr queries and its
+ * administrative requests.
+ * <p>
+ * Instances are immutable; every with... method returns a modified copy.
+ */
+public final class ConnectionSettings {
+
+  public static final ConnectionSettings DEFAULT = new ConnectionSettings(100, 50,
+          TimeUnit.SECONDS.toMillis(30), TimeUnit.SECONDS.toMillis(60), TimeUnit.MINUTES.toMillis(5), 5000, 10000);
+
+  private final int maxTotal;
+  private final int maxPerRoute;
+  private final long keepAliveMillis;
+  private final long maxIdleMillis;
+  private final long timeToLiveMillis;
+  private final int connectTimeoutMillis;
+  private final int socketTimeoutMillis;
+
+  private ConnectionSettings(int maxTotal, int maxPerRoute, long keepAliveMillis, long maxIdleMillis,
+                             long timeToLiveMillis, int connectTimeoutMillis, int socketTimeoutMillis) {
+    if (maxTotal < 1 || maxPerRoute < 1) {
+      throw new IllegalArgumentException("Connection limits must be positive: " + maxTotal + "/" + maxPerRoute);
+    }
+    this.maxTotal = maxTotal;
+    this.maxPerRoute = maxPerRoute;
+    this.keepAliveMillis = keepAliveMillis;
+    this.maxIdleMillis = maxIdleMillis;
+    this.timeToLiveMillis = timeToLiveMillis;
+    this.connectTimeoutMillis = connectTimeoutMillis;
+    this.socketTimeoutMillis = socketTimeoutMillis;
+  }
+
+  /**
+   * Maximum number of connections over all routes.
+   */
+  public int getMaxTotal() {
+    return maxTotal;
+  }
+
+  public ConnectionSettings withMaxTotal(int maxTotal) {
+    return new ConnectionSettings(maxTotal, maxPerRoute, keepAliveMillis, maxIdleMillis, timeToLiveMillis,
+            connectTimeoutMillis, socketTimeoutMillis);
+  }
+
+  /**
+   * Maximum number of connections to a single Solr host.
+   */
+  public int getMaxPerRoute() {
+    return maxPerRoute;
+  }
+
+  public ConnectionSettings withMaxPerRoute(int maxPerRoute) {
+    return new ConnectionSettings(maxTotal, maxPerRoute, keepAliveMillis, maxIdleMillis, timeToLiveMillis,
+            connectTimeoutMillis, socketTimeoutMillis);
+  }
+
+  /**
+   * How long a connection is kept open if the server does not send a Keep-Alive header.
+   */
+  public long getKeepAliveMillis() {
+    return keepAliveMillis;
+  }
+
+  public ConnectionSettings withKeepAlive(long duration, TimeUnit unit) {
+    return new ConnectionSettings(maxTotal, maxPerRoute, unit.toMillis(duration), maxIdleMillis, timeToLiveMillis,
+            connectTimeoutMillis, socketTimeoutMillis);
+  }
+
+  /**
+   * Connections which were idle for that long are closed by a background thread.
+   */
+  public long getMaxIdleMillis() {
+    return maxIdleMillis;
+  }
+
+  public ConnectionSettings withMaxIdle(long duration, TimeUnit unit) {
+    return new ConnectionSettings(maxTotal, maxPerRoute, keepAliveMillis, unit.toMillis(duration), timeToLiveMillis,
+            connectTimeoutMillis, socketTimeoutMillis);
+  }
+
+  /**
+   * Connections are never reused after this time, even when they were busy all the time.
+   */
+  public long getTimeToLiveMillis() {
+    return timeToLiveMillis;
+  }
+
+  public ConnectionSettings withTimeToLive(long duration, TimeUnit unit) {
+    return new ConnectionSettings(maxTotal, maxPerRoute, keepAliveMillis, maxIdleMillis, unit.toMillis(duration),
+            connectTimeoutMillis, socketTimeoutMillis);
+  }
+
+  public int getConnectTimeoutMillis() {
+    return connectTimeoutMillis;
+  }
+
+  public int getSocketTimeoutMillis() {
+    return socketTimeoutMillis;
+  }
+
+  public ConnectionSettings withTimeouts(int connectTimeoutMillis, int socketTimeoutMillis) {
+    return new ConnectionSettings(maxTotal, maxPerRoute, keepAliveMillis, maxIdleMillis, timeToLiveMillis,
+            connectTimeoutMillis, socketTimeoutMillis);
+  }
+
+  @Override
+  public String toString() {
+    return "ConnectionSettings{maxTotal=" + maxTotal + ", maxPerRoute=" + maxPerRoute
+            + ", keepAlive=" + keepAliveMillis + "ms, maxIdle=" + maxIdleMillis + "ms, ttl=" + timeToLiveMillis
+            + "ms, connectTimeout=" + connectTimeoutMillis + "ms, socketTimeout=" + socketTimeoutMillis + "ms}";
+  }
+}
@@ -0,0 +1,101 @@
+package org.fiolino.searcher;
+
+import org.fiolino.searcher.fieldhandling.DynamicFacetType;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Knows which Solr fields of a schema snapshot belong to which dynamic facet, in both directions.
+ * A field matching the patterns of several dynamic facets belongs to all of them.
+ * <p>
+ * Built once per snapshot, so that queries and results don't need to match every field name against
+ * every dynamic facet's pattern.
+ */
+public final class DynamicFacetIndex {
+
+  /**
+   * A Solr field belonging to a dynamic facet.
+   */
+  public static final class Entry {
+    private final DynamicFacetType<?> facetType;
+    private final String fieldName;
+    private final String name;
+
+    Entry(DynamicFacetType<?> facetType, String fieldName, String name) {
+      this.facetType = facetType;
+      this.fieldName = fieldName;
+      this.name = name;
+    }
+
+    public DynamicFacetType<?> getFacetType() {
+      return facetType;
+    }
+
+    public String getFieldName() {
+      return fieldName;
+    }
+
+    /**
+     * The part of the field name that the wildcard stands for.
+     */
+    public String getName() {
+      return name;
+    }
+
+    @Override
+    public String toString() {
+      return fieldName + " -> " + name;
+    }
+  }
+
+  private final Map<DynamicFacetType<?>, List<Entry>> byFacetType;
+  private final Map<String, Entry> byFieldName;
+
+  DynamicFacetIndex(Collection<String> fieldNames, Collection<DynamicFacetType<?>> dynamicFacets) {
+    byFacetType = new IdentityHashMap<>();
+    byFieldName = new HashMap<>();
+    for (DynamicFacetType<?> type : dynamicFacets) {
+      byFacetType.put(type, new ArrayList<>());
+    }
+    for (String f : fieldNames) {
+      for (DynamicFacetType<?> type : dynamicFacets) {
+        String name = type.extractName(f);
+        if (name != null) {
+          Entry e = new Entry(type, f, name);
+          byFacetType.get(type).add(e);
+          byFieldName.putIfAbsent(f, e);
+        }
+      }
+    }
+  }
+
+  /**
+   * Gets all fields of the given dynamic facet.
+   */
+  public List<Entry> getFields(DynamicFacetType<?> facetType) {
+    List<Entry> entries = byFacetType.get(facetType);
+    return entries == null ? Collections.<Entry>emptyList() : Collections.unmodifiableList(entries);
+  }
+
+  /**
+   * Finds the dynamic facet of the given Solr field; if several match, the first one registered.
+   *
+   * @return null if it's no dynamic facet field, or the field was not in the schema yet
+   */
+  @Nullable
+  public Entry getByFieldName(String fieldName) {
+    return byFieldName.get(fieldName);
+  }
+
+  @Override
+  public String toString() {
+    return "DynamicFacetIndex with " + byFieldName.size() + " fields";
+  }
+}
@@ -0,0 +1,278 @@
+package org.fiolino.searcher;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import org.apache.http.HttpStatus;
+import org.apache.http.NameValuePair;
+import org.apache.http.client.entity.UrlEncodedFormEntity;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.message.BasicNameValuePair;
+import org.apache.solr.client.solrj.SolrQuery;
+import org.apache.solr.common.SolrDocument;
+import org.apache.solr.common.params.CommonParams;
+import org.apache.solr.common.params.CursorMarkParams;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+
+/**
+ * Streams complete result sets from Solr's /export request handler.
+ * <p>
+ * Solr can only export fields with doc values, so the field list is restricted to those fields of the
+ * type configuration which have doc values in the realm's schema. Each exported document is handed to the
+ * consumer before the next one is read from the connection, so a slow consumer throttles Solr instead of
+ * filling the heap.
+ */
+public final class ExportEngine {
+
+  private static final Logger logger = LoggerFactory.getLogger(ExportEngine.class);
+
+  private static final Set<String> IGNORED_PARAMETERS = new HashSet<>(Arrays.asList(
+          CommonParams.FL, CommonParams.SORT, CommonParams.ROWS, CommonParams.START, CommonParams.QT,
+          CommonParams.WT, CursorMarkParams.CURSOR_MARK_PARAM));
+
+  private static final String[] IGNORED_PREFIXES = {"facet", "json.facet", "hl", "f.", "spellcheck"};
+
+  private final TypeConfiguration<?> typeConfiguration;
+
+  public ExportEngine(TypeConfiguration<?> typeConfiguration) {
+    this.typeConfiguration = typeConfiguration;
+  }
+
+  /**
+   * Exports all documents matching the builder's query and filters.
+   *
+   * @param builder  Contains the query and the filters; facets, highlighting and paging are ignored
+   * @param consumer Gets every document, one after another, in the calling thread
+   * @return The number of exported documents
+   */
+  public long export(QueryBuilder builder, Consumer<? super SolrDocument> consumer) {
+    Realm realm = builder.getRealm();
+    SchemaSnapshot schema = realm.getSchema();
+    SolrQuery query = builder.build();
+    List<NameValuePair> parameters = createParameters(query, schema, realm.getUniqueKeyField());
+    logger.info("Exporting " + parameters);
+
+    HttpPost post = new HttpPost(realm.getCoreUrl() + "/export");
+    post.setEntity(new UrlEncodedFormEntity(parameters, StandardCharsets.UTF_8));
+    Measurement m = builder.getMeasurement();
+    try (CloseableHttpResponse response = realm.getHttpClient().execute(post)) {
+      if (response.getStatusLine().getStatusCode() != HttpStatus.SC_OK) {
+        throw new RuntimeException("Export failed for " + realm + ": " + response.getStatusLine());
+      }
+      m.queryReturned();
+      long count;
+      try (JsonReader reader = new JsonReader(new InputStreamReader(response.getEntity().getContent(),
+              StandardCharsets.UTF_8))) {
+        count = readResponse(reader, schema, consumer);
+      }
+      m.resultFinished();
+      logger.info("Exported " + count + " documents for " + builder + "; " + m);
+      return count;
+    } catch (IOException ex) {
+      throw new RuntimeException("Export failed for " + realm, ex);
+    }
+  }
+
+  private List<NameValuePair> createParameters(SolrQuery query, SchemaSnapshot schema, String uniqueKey) {
+    List<NameValuePair> parameters = new ArrayList<>();
+    Iterator<String> names = query.getParameterNamesIterator();
+    while (names.hasNext()) {
+      String name = names.next();
+      if (isIgnored(name)) {
+        continue;
+      }
+      for (String v : query.getParams(name)) {
+        parameters.add(new BasicNameValuePair(name, v));
+      }
+    }
+    List<String> fields = findExportedFields(schema, uniqueKey);
+    parameters.add(new BasicNameValuePair(CommonParams.FL, String.join(",", fields)));
+    parameters.add(new BasicNameValuePair(CommonParams.SORT, createSort(query, schema, uniqueKey, fields)));
+    parameters.add(new BasicNameValuePair(CommonParams.WT, "json"));
+    return parameters;
+  }
+
+  private static boolean isIgnored(String parameter) {
+    if (IGNORED_PARAMETERS.contains(parameter)) {
+      return true;
+    }
+    for (String p : IGNORED_PREFIXES) {
+      if (parameter.startsWith(p)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private List<String> findExportedFields(SchemaSnapshot schema, String uniqueKey) {
+    Set<String> fields = new LinkedHashSet<>();
+    if (uniqueKey != null && schema.hasDocValues(uniqueKey)) {
+      fields.add(uniqueKey);
+    }
+    for (String f : typeConfiguration.getFields().keySet()) {
+      if (f.indexOf('*') < 0) {
+        if (schema.hasDocValues(f)) {
+          fields.add(f);
+        }
+        continue;
+      }
+      Pattern wildcard = Pattern.compile(Pattern.quote(f).replace("*", "\\E.*\\Q"));
+      for (String dv : schema.getDocValueFields()) {
+        if (wildcard.matcher(dv).matches()) {
+          fields.add(dv);
+        }
+      }
+    }
+    if (fields.isEmpty()) {
+      throw new IllegalStateException("No field with doc values to export in " + typeConfiguration);
+    }
+    return new ArrayList<>(fields);
+  }
+
+  /**
+   * Uses the query's sorting if it's only on doc values fields, or sorts by the unique key otherwise.
+   */
+  private static String createSort(SolrQuery query, SchemaSnapshot schema, String uniqueKey, List<String> fields) {
+    List<SolrQuery.SortClause> sorts = query.getSorts();
+    if (!sorts.isEmpty()) {
+      StringBuilder sb = new StringBuilder();
+      for (SolrQuery.SortClause c : sorts) {
+        if (!schema.hasDocValues(c.getItem())) {
+          sb = null;
+          break;
+        }
+        if (sb.length() > 0) {
+          sb.append(',');
+        }
+        sb.append(c.getItem()).append(' ').append(c.getOrder());
+      }
+      if (sb != null) {
+        return sb.toString();
+      }
+    }
+    String sortField = uniqueKey != null && schema.hasDocValues(uniqueKey) ? uniqueKey : fields.get(0);
+    return sortField + " asc";
+  }
+
+  private static long readResponse(JsonReader reader, SchemaSnapshot schema,
+                                   Consumer<? super SolrDocument> consumer) throws IOException {
+    long count = 0;
+    reader.beginObject();
+    while (reader.hasNext()) {
+      if (!"response".equals(reader.nextName())) {
+        reader.skipValue();
+        continue;
+      }
+      reader.beginObject();
+      while (reader.hasNext()) {
+        if (!"docs".equals(reader.nextName())) {
+          reader.skipValue();
+          continue;
+        }
+        reader.beginArray();
+        while (reader.hasNext()) {
+          SolrDocument doc = readDocument(reader, schema);
+          consumer.accept(doc);
+          count++;
+        }
+        reader.endArray();
+      }
+      reader.endObject();
+    }
+    reader.endObject();
+    return count;
+  }
+
+  private static SolrDocument readDocument(JsonReader reader, SchemaSnapshot schema) throws IOException {
+    SolrDocument doc = new SolrDocument();
+    reader.beginObject();
+    while (reader.hasNext()) {
+      String name = reader.nextName();
+      if ("EXCEPTION".equals(name)) {
+        throw new IOException("Export failed: " + reader.nextString());
+      }
+      Class<?> type = valueTypeOf(schema.getFieldType(name));
+      if (reader.peek() == JsonToken.BEGIN_ARRAY) {
+        List<Object> values = new ArrayList<>();
+        reader.beginArray();
+        while (reader.hasNext()) {
+          values.add(readValue(reader, type));
+        }
+        reader.endArray();
+        doc.setField(name, values);
+      } else {
+        doc.setField(name, readValue(reader, type));
+      }
+    }
+    reader.endObject();
+    return doc;
+  }
+
+  /**
+   * Finds the Java type that Solr itself would return for a field type name.
+   */
+  private static Class<?> valueTypeOf(String solrType) {
+    if (solrType == null) {
+      return String.class;
+    }
+    String t = solrType.toLowerCase(Locale.ROOT);
+    if (t.contains("date")) {
+      return Date.class;
+    }
+    if (t.contains("long")) {
+      return Long.class;
+    }
+    if (t.contains("int")) {
+      return Integer.class;
+    }
+    if (t.contains("float")) {
+      return Float.class;
+    }
+    if (t.contains("double")) {
+      return Double.class;
+    }
+    if (t.contains("bool")) {
+      return Boolean.class;
+    }
+    return String.class;
+  }
+
+  private static Object readValue(JsonReader reader, Class<?> type) throws IOException {
+    if (reader.peek() == JsonToken.NULL) {
+      reader.nextNull();
+      return null;
+    }
+    if (reader.peek() == JsonToken.BOOLEAN) {
+      return reader.nextBoolean();
+    }
+    String value = reader.nextString();
+    if (type == Date.class) {
+      return Date.from(Instant.parse(value));
+    }
+    if (type == Long.class) {
+      return Long.valueOf(value);
+    }
+    if (type == Integer.class) {
+      return Integer.valueOf(value);
+    }
+    if (type == Float.class) {
+      return Float.valueOf(value);
+    }
+    if (type == Double.class) {
+      return Double.valueOf(value);
+    }
+    if (type == Boolean.class) {
+      return Boolean.valueOf(value);
+    }
+    return value;
+  }
+}
@@ -0,0 +1,17 @@
+package org.fiolino.searcher;
+
+/**
+ * How facets are requested from Solr.
+ */
+public enum FacetEngine {
+  /**
+   * Classic facet.field parameters, with one global facet.method and per-field overrides.
+   */
+  CLASSIC,
+
+  /**
+   * One json.facet request with a terms facet per field; faster and leaner on the server for large facets.
+   * Facets with {@link org.fiolino.data.annotation.Hint#ONLY_COUNT} still use facet.exists of the classic engine.
+   */
+  JSON
+}
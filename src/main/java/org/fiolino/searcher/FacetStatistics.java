@@ -0,0 +1,229 @@
+package org.fiolino.searcher;
+
+import com.google.gson.reflect.TypeToken;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.utils.URIBuilder;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.util.EntityUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Samples the number of distinct values and the docValues of all faceted fields of a realm, so that each facet
+ * gets the method which fits its actual data instead of the static hint of its annotation.
+ * <p>
+ * Fields are registered when they're faceted the first time, and sampled in the background from then on.
+ * Until the first sample is there, the hint is used.
+ */
+final class FacetStatistics {
+
+  private static final Logger logger = LoggerFactory.getLogger(FacetStatistics.class);
+
+  private static final Type LUKE_FIELDS_TYPE = new TypeToken<Map<String, Map<String, Object>>>() {}.getType();
+
+  /**
+   * Up to this many distinct values, a cached filter per value is the fastest, and all values are returned.
+   */
+  static final int ENUM_MAX_DISTINCT = 100;
+
+  /**
+   * Solr's default facet.limit.
+   */
+  static final int DEFAULT_LIMIT = 100;
+
+  /**
+   * What is known about a faceted field.
+   */
+  static final class FieldProfile {
+    final long distinct;
+    final boolean docValues;
+    final boolean multiValued;
+
+    FieldProfile(long distinct, boolean docValues, boolean multiValued) {
+      this.distinct = distinct;
+      this.docValues = docValues;
+      this.multiValued = multiValued;
+    }
+
+    /**
+     * The facet.method for classic faceting.
+     */
+    String classicMethod() {
+      if (distinct <= ENUM_MAX_DISTINCT) {
+        return "enum";
+      }
+      if (docValues) {
+        return "fc";
+      }
+      // Without docValues, uninverting is cheapest for multiple values, and per segment caching for single values
+      return multiValued ? "uif" : "fcs";
+    }
+
+    /**
+     * The method of a JSON terms facet.
+     */
+    String jsonMethod() {
+      return multiValued && !docValues ? "uif" : "dv";
+    }
+
+    /**
+     * The limit if none was requested; -1 for all values.
+     */
+    int defaultLimit() {
+      return distinct <= ENUM_MAX_DISTINCT ? -1 : DEFAULT_LIMIT;
+    }
+
+    @Override
+    public String toString() {
+      return distinct + " distinct values" + (docValues ? ", docValues" : "") + (multiValued ? ", multiValued" : "");
+    }
+  }
+
+  private final CloseableHttpClient httpClient;
+  private final Supplier<String> coreUrl;
+  private final Executor executor;
+  private final Set<String> fields = ConcurrentHashMap.newKeySet();
+  private final ConcurrentMap<String, FieldProfile> profiles = new ConcurrentHashMap<>();
+  private final AtomicBoolean sampling = new AtomicBoolean();
+  /**
+   * Keyed by field, as the profiles are; the inner map has only one entry per facet method.
+   */
+  private final ConcurrentMap<String, ConcurrentMap<String, LongAdder>> methodCounts = new ConcurrentHashMap<>();
+
+  FacetStatistics(CloseableHttpClient httpClient, Supplier<String> coreUrl, Executor executor) {
+    this.httpClient = httpClient;
+    this.coreUrl = coreUrl;
+    this.executor = executor;
+  }
+
+  /**
+   * Gets the sampled profile of a field, and registers it for sampling if it's new.
+   *
+   * @return null if the field wasn't sampled yet
+   */
+  FieldProfile get(String fieldName) {
+    FieldProfile profile = profiles.get(fieldName);
+    if (profile == null && fields.add(fieldName)) {
+      sampleInBackground();
+    }
+    return profile;
+  }
+
+  /**
+   * Counts which method was used for a field.
+   */
+  void record(String fieldName, String method) {
+    ConcurrentMap<String, LongAdder> counts = methodCounts.get(fieldName);
+    if (counts == null) {
+      counts = methodCounts.computeIfAbsent(fieldName, k -> new ConcurrentHashMap<>(4));
+    }
+    LongAdder count = counts.get(method);
+    if (count == null) {
+      count = counts.computeIfAbsent(method, k -> new LongAdder());
+    }
+    count.increment();
+  }
+
+  /**
+   * How often each field was faceted with which method, keyed by field and then by method.
+   */
+  Map<String, Map<String, Long>> getMethodCounts() {
+    Map<String, Map<String, Long>> counts = new TreeMap<>();
+    methodCounts.forEach((field, perMethod) -> {
+      Map<String, Long> c = new TreeMap<>();
+      perMethod.forEach((method, count) -> c.put(method, count.sum()));
+      counts.put(field, c);
+    });
+    return counts;
+  }
+
+  private void sampleInBackground() {
+    if (sampling.compareAndSet(false, true)) {
+      executor.execute(this::sampleNow);
+    }
+  }
+
+  /**
+   * Samples all registered fields again. Does nothing if a sample is already running.
+   */
+  void sampleAll() {
+    if (sampling.compareAndSet(false, true)) {
+      sampleNow();
+    }
+  }
+
+  private void sampleNow() {
+    try {
+      if (fields.isEmpty()) {
+        return;
+      }
+      List<String> names = new ArrayList<>(fields);
+      Map<String, Map<String, Object>> luke = fetch(names);
+      for (String name : names) {
+        Map<String, Object> info = luke.get(name);
+        if (info == null) {
+          continue;
+        }
+        FieldProfile profile = createProfile(info);
+        FieldProfile previous = profiles.put(name, profile);
+        if (previous != null && !previous.classicMethod().equals(profile.classicMethod())) {
+          logger.info("Facet method of " + name + " changed from " + previous.classicMethod() + " to "
+                  + profile.classicMethod() + ": " + profile);
+        }
+      }
+    } catch (IOException | RuntimeException ex) {
+      logger.warn("Cannot sample facet fields from " + coreUrl.get(), ex);
+    } finally {
+      sampling.set(false);
+    }
+  }
+
+  private static FieldProfile createProfile(Map<String, Object> info) {
+    Object distinct = info.get("distinct");
+    Object schema = info.get("schema");
+    String flags = schema == null ? "" : schema.toString();
+    return new FieldProfile(distinct instanceof Number ? ((Number) distinct).longValue() : Long.MAX_VALUE,
+            flags.indexOf('D') >= 0, flags.indexOf('M') >= 0);
+  }
+
+  private Map<String, Map<String, Object>> fetch(List<String> names) throws IOException {
+    HttpGet httpGet;
+    try {
+      URIBuilder builder = new URIBuilder(coreUrl.get() + "/admin/luke");
+      builder.addParameter("fl", String.join(",", names));
+      builder.addParameter("numTerms", "0");
+      builder.addParameter("wt", "json");
+      httpGet = new HttpGet(builder.build());
+    } catch (URISyntaxException ex) {
+      throw new IllegalStateException("Cannot create URI for " + coreUrl.get(), ex);
+    }
+    try (CloseableHttpResponse response = httpClient.execute(httpGet)) {
+      String content = EntityUtils.toString(response.getEntity(), "UTF-8");
+      if (response.getStatusLine().getStatusCode() != HttpStatus.SC_OK) {
+        throw new IOException(response.getStatusLine() + ": " + content);
+      }
+      Map<String, Map<String, Object>> fields = Json.extractFrom(content, "fields", LUKE_FIELDS_TYPE);
+      if (fields == null) {
+        throw new IOException("Luke request returned no fields: " + content);
+      }
+      return fields;
+    }
+  }
+}
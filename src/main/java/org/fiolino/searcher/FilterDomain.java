@@ -35,7 +35,10 @@ public final class FilterDomain {
 
   private static final FilterDomain DEFAULT = new FilterDomain("default");
 
-  private String qf;
+  /**
+   * Increased whenever full text fields are registered, so that derived qf strings get rebuilt.
+   */
+  private volatile int fullTextVersion;
 
   public static FilterDomain getDefault() {
     return DEFAULT;
@@ -161,15 +164,12 @@ public final class FilterDomain {
 
   void registerFullTextField(FullTextField textField) {
     fullTextFields.add(textField);
-    qf = null;
+    fullTextVersion++;
   }
 
-  public synchronized String getQF(Realm realm) {
-    if (qf != null) {
-      return qf;
-    }
-    qf = FullTextField.createQF(fullTextFields, realm);
-    return qf;
+  public String getQF(Realm realm) {
+    return realm.derive(this, "qf", fullTextVersion,
+            s -> FullTextField.createQF(fullTextFields, s));
   }
 
   @Override
@@ -20,14 +20,14 @@ abstract class FullTextField implements Comparable<FullTextField> {
     return Float.compare(other.relevancy, relevancy);
   }
 
-  abstract void appendNamesTo(StringBuilder sb, Realm realm);
-  abstract void appendWeightedNamesTo(StringBuilder sb, float relevancy, Realm realm);
+  abstract void appendNamesTo(StringBuilder sb, SchemaSnapshot schema);
+  abstract void appendWeightedNamesTo(StringBuilder sb, float relevancy, SchemaSnapshot schema);
 
-  private void appendWeightedNamesTo(StringBuilder sb, Realm realm) {
+  private void appendWeightedNamesTo(StringBuilder sb, SchemaSnapshot schema) {
     if (relevancy == 1.0f) {
-      appendNamesTo(sb, realm);
+      appendNamesTo(sb, schema);
     } else {
-      appendWeightedNamesTo(sb, relevancy, realm);
+      appendWeightedNamesTo(sb, relevancy, schema);
     }
   }
 
@@ -50,12 +50,12 @@ abstract class FullTextField implements Comparable<FullTextField> {
     }
 
     @Override
-    void appendNamesTo(StringBuilder sb, Realm realm) {
+    void appendNamesTo(StringBuilder sb, SchemaSnapshot schema) {
       sb.append(name).append(' ');
     }
 
     @Override
-    void appendWeightedNamesTo(StringBuilder sb, float relevancy, Realm realm) {
+    void appendWeightedNamesTo(StringBuilder sb, float relevancy, SchemaSnapshot schema) {
       sb.append(name).append('^').append(relevancy).append(' ');
     }
   }
@@ -79,8 +79,8 @@ abstract class FullTextField implements Comparable<FullTextField> {
     }
 
     @Override
-    void appendNamesTo(StringBuilder sb, Realm realm) {
-      List<String> fieldNames = realm.getFieldNames();
+    void appendNamesTo(StringBuilder sb, SchemaSnapshot schema) {
+      List<String> fieldNames = schema.getFieldNames();
       for (String f : fieldNames) {
         if (namePattern.matcher(f).matches()) {
           sb.append(f).append(' ');
@@ -89,8 +89,8 @@ abstract class FullTextField implements Comparable<FullTextField> {
     }
 
     @Override
-    void appendWeightedNamesTo(StringBuilder sb, float relevancy, Realm realm) {
-      List<String> fieldNames = realm.getFieldNames();
+    void appendWeightedNamesTo(StringBuilder sb, float relevancy, SchemaSnapshot schema) {
+      List<String> fieldNames = schema.getFieldNames();
       for (String f : fieldNames) {
         if (namePattern.matcher(f).matches()) {
           sb.append(f).append('^').append(relevancy).append(' ');
@@ -99,20 +99,20 @@ abstract class FullTextField implements Comparable<FullTextField> {
     }
   }
 
-  static String createQF(Collection<FullTextField> qfFields, Realm realm) {
+  static String createQF(Collection<FullTextField> qfFields, SchemaSnapshot schema) {
     StringBuilder sb = new StringBuilder();
     List<FullTextField> fields = new ArrayList<>(qfFields);
     Collections.sort(fields);
     for (FullTextField f : fields) {
-      f.appendWeightedNamesTo(sb, realm);
+      f.appendWeightedNamesTo(sb, schema);
     }
     return sb.toString();
   }
 
-  static String createNames(Collection<FullTextField> fields, Realm realm) {
+  static String createNames(Collection<FullTextField> fields, SchemaSnapshot schema) {
     StringBuilder sb = new StringBuilder();
     for (FullTextField f : fields) {
-      f.appendNamesTo(sb, realm);
+      f.appendNamesTo(sb, schema);
     }
     return sb.toString();
   }
@@ -38,6 +38,28 @@ final class Json {
         return GSON.fromJson(element, type);
     }
 
+    /**
+     * Extracts a single string value that is part of a json structure.
+     *
+     * @param content The JSON content
+     * @param key     Which to look up in the structure
+     * @return The value, or null if there is no such primitive value
+     */
+    static String extractStringFrom(String content, String key) {
+        JsonElement element = fromString(content, key);
+        if (element == null || !element.isJsonPrimitive()) {
+            return null;
+        }
+        return element.getAsString();
+    }
+
+    /**
+     * Serializes some maps, lists, arrays or primitives.
+     */
+    static String toJson(Object value) {
+        return GSON.toJson(value);
+    }
+
     private static JsonElement fromString(String json, String path) {
         try {
             JsonObject obj = GSON.fromJson(json, JsonObject.class);
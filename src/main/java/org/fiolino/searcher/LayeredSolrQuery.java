@@ -0,0 +1,155 @@
+package org.fiolino.searcher;
+
+import org.apache.solr.client.solrj.SolrQuery;
+import org.apache.solr.common.params.ModifiableSolrParams;
+import org.apache.solr.common.params.SolrParams;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A SolrQuery on top of an immutable parameter template.
+ * <p>
+ * Reads fall through to the template until a parameter is changed; only then is it copied into this query.
+ * Creating such a query therefore costs nothing, no matter how many parameters the template has.
+ */
+final class LayeredSolrQuery extends SolrQuery {
+
+  private static final long serialVersionUID = 1L;
+
+  private final Map<String, String[]> template;
+
+  /**
+   * Template parameters that were changed or removed here; these are never read from the template again.
+   */
+  private final Set<String> shadowed = new HashSet<>();
+
+  /**
+   * @param template Will never be modified; the arrays neither
+   */
+  LayeredSolrQuery(Map<String, String[]> template) {
+    this.template = template;
+  }
+
+  private boolean fromTemplate(String name) {
+    return template.containsKey(name) && !shadowed.contains(name);
+  }
+
+  /**
+   * Copies the template's values into this query before they get modified.
+   */
+  private void materialize(String name) {
+    if (fromTemplate(name)) {
+      shadowed.add(name);
+      super.set(name, template.get(name).clone());
+    }
+  }
+
+  @Override
+  public String get(String param) {
+    String[] values = getParams(param);
+    return values == null || values.length == 0 ? null : values[0];
+  }
+
+  @Override
+  public String[] getParams(String param) {
+    if (fromTemplate(param)) {
+      return template.get(param).clone();
+    }
+    return super.getParams(param);
+  }
+
+  @Override
+  public ModifiableSolrParams set(String name, String... val) {
+    if (template.containsKey(name)) {
+      shadowed.add(name);
+    }
+    return super.set(name, val);
+  }
+
+  @Override
+  public ModifiableSolrParams set(String name, int val) {
+    return set(name, String.valueOf(val));
+  }
+
+  @Override
+  public ModifiableSolrParams set(String name, boolean val) {
+    return set(name, String.valueOf(val));
+  }
+
+  @Override
+  public ModifiableSolrParams add(String name, String... val) {
+    materialize(name);
+    return super.add(name, val);
+  }
+
+  @Override
+  public void add(SolrParams params) {
+    Iterator<String> names = params.getParameterNamesIterator();
+    while (names.hasNext()) {
+      String name = names.next();
+      set(name, params.getParams(name));
+    }
+  }
+
+  @Override
+  public String[] remove(String name) {
+    String[] old = getParams(name);
+    if (template.containsKey(name)) {
+      shadowed.add(name);
+    }
+    super.remove(name);
+    return old;
+  }
+
+  @Override
+  public boolean remove(String name, String value) {
+    materialize(name);
+    return super.remove(name, value);
+  }
+
+  @Override
+  public void clear() {
+    shadowed.addAll(template.keySet());
+    super.clear();
+  }
+
+  @Override
+  public Set<String> getParameterNames() {
+    Set<String> names = new LinkedHashSet<>();
+    for (String name : template.keySet()) {
+      if (!shadowed.contains(name)) {
+        names.add(name);
+      }
+    }
+    names.addAll(super.getParameterNames());
+    return names;
+  }
+
+  @Override
+  public Iterator<String> getParameterNamesIterator() {
+    return getParameterNames().iterator();
+  }
+
+  @Override
+  public int size() {
+    return getParameterNames().size();
+  }
+
+  /**
+   * Returns a merged, unmodifiable copy.
+   */
+  @Override
+  public Map<String, String[]> getMap() {
+    Map<String, String[]> map = new LinkedHashMap<>();
+    for (String name : getParameterNames()) {
+      map.put(name, getParams(name));
+    }
+    return Collections.unmodifiableMap(map);
+  }
+}
@@ -9,10 +9,35 @@ import java.util.concurrent.TimeUnit;
  */
 public class Measurement {
   private final long start = System.nanoTime();
+  private long submitted;
+  private long dispatched;
   private long queryBuilt;
   private long queryReturned;
   private long resultFinished;
 
+  /**
+   * Marks the moment when an asynchronous search was handed to its executor.
+   */
+  public void submitted() {
+    if (submitted > 0) {
+      throw new IllegalStateException("submitted called twice!");
+    }
+    submitted = System.nanoTime();
+  }
+
+  /**
+   * Marks the moment when an asynchronous search was picked up by its executor.
+   */
+  public void dispatched() {
+    if (submitted == 0) {
+      throw new IllegalStateException("submitted not called yet!");
+    }
+    if (dispatched > 0) {
+      throw new IllegalStateException("dispatched called twice!");
+    }
+    dispatched = System.nanoTime();
+  }
+
   public void queryBuilt() {
     if (queryBuilt > 0) {
       throw new IllegalStateException("querySent called twice!");
@@ -45,18 +70,25 @@ public class Measurement {
 
   public String measureAll(long qTime) {
     resultFinished();
-    return "Time measurement: build query " + Strings.printDuration(queryBuilt - start, TimeUnit.NANOSECONDS)
+    return "Time measurement: " + printDispatched() + "build query " + Strings.printDuration(queryBuilt - start, TimeUnit.NANOSECONDS)
             + "; server query time " + qTime
             + " msec; query returned " + Strings.printDuration(queryReturned - start, TimeUnit.MILLISECONDS)
             + "; result finished " + Strings.printDuration(resultFinished - start, TimeUnit.MILLISECONDS);
   }
 
+  private String printDispatched() {
+    if (dispatched == 0) {
+      return "";
+    }
+    return "waited for executor " + Strings.printDuration(dispatched - submitted, TimeUnit.NANOSECONDS) + "; ";
+  }
+
   @Override
   public String toString() {
     if (resultFinished == 0) {
       return "Started " + Strings.printDuration(System.nanoTime() - start, TimeUnit.NANOSECONDS) + " ago.";
     }
-    return "Time measurement: build query " + Strings.printDuration(queryBuilt - start, TimeUnit.NANOSECONDS)
+    return "Time measurement: " + printDispatched() + "build query " + Strings.printDuration(queryBuilt - start, TimeUnit.NANOSECONDS)
             + "; query returned " + Strings.printDuration(queryReturned - start, TimeUnit.MILLISECONDS)
             + "; result finished " + Strings.printDuration(resultFinished - start, TimeUnit.MILLISECONDS);
   }
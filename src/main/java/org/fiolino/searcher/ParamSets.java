@@ -0,0 +1,185 @@
+package org.fiolino.searcher;
+
+import org.apache.http.HttpStatus;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.util.EntityUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Publishes request parameter sets to the /config/params API of all replicas of a realm.
+ * <p>
+ * Every set carries a version hash of its content. It's published only if the version on the server differs,
+ * and verified again periodically, so that sets changed or deleted on the server are detected.
+ */
+final class ParamSets {
+
+  private static final Logger logger = LoggerFactory.getLogger(ParamSets.class);
+
+  /**
+   * Stored in each parameter set; Solr ignores it in queries.
+   */
+  private static final String VERSION_PARAM = "_searcher_version";
+
+  private static final class ParamSet {
+    final Map<String, String[]> params;
+    final String version;
+    volatile boolean published;
+    final AtomicBoolean scheduled = new AtomicBoolean();
+
+    ParamSet(Map<String, String[]> params) {
+      this.params = params;
+      version = versionOf(params);
+    }
+  }
+
+  private final CloseableHttpClient httpClient;
+  private final List<String> coreUrls;
+  private final ConcurrentMap<String, ParamSet> paramSets = new ConcurrentHashMap<>();
+
+  /**
+   * Publishes the sets in the background; a single thread, so that an outdated set is never published after a newer one.
+   */
+  private final Executor publisher;
+
+  ParamSets(CloseableHttpClient httpClient, List<String> coreUrls, Executor publisher) {
+    this.httpClient = httpClient;
+    this.coreUrls = coreUrls;
+    this.publisher = publisher;
+  }
+
+  /**
+   * Makes sure the set is published with exactly these parameters.
+   * The first call for a parameter map schedules the publishing and doesn't wait for it.
+   *
+   * @return Whether queries can refer to the set; false until it's published
+   */
+  boolean ensure(String name, Map<String, String[]> params) {
+    ParamSet ps = paramSets.get(name);
+    if (ps == null || ps.params != params) {
+      ps = paramSets.compute(name, (n, existing) ->
+              existing != null && existing.params == params ? existing : new ParamSet(params));
+    }
+    if (!ps.published && ps.scheduled.compareAndSet(false, true)) {
+      ParamSet toPublish = ps;
+      try {
+        publisher.execute(() -> {
+          synchronized (toPublish) {
+            publishIfNeeded(name, toPublish);
+          }
+        });
+      } catch (RejectedExecutionException ex) {
+        logger.warn("Cannot publish parameter set " + name + ", realm is closed");
+      }
+    }
+    return ps.published;
+  }
+
+  /**
+   * Checks all sets on the server, and publishes them again if they were changed there.
+   */
+  void verifyAll() {
+    for (Map.Entry<String, ParamSet> e : paramSets.entrySet()) {
+      ParamSet ps = e.getValue();
+      synchronized (ps) {
+        publishIfNeeded(e.getKey(), ps);
+      }
+    }
+  }
+
+  private void publishIfNeeded(String name, ParamSet ps) {
+    boolean published = true;
+    for (String coreUrl : coreUrls) {
+      try {
+        String remoteVersion = fetchVersion(coreUrl, name);
+        if (!ps.version.equals(remoteVersion)) {
+          if (remoteVersion != null) {
+            logger.warn("Parameter set " + name + " on " + coreUrl + " has version " + remoteVersion
+                    + " instead of " + ps.version + ", publishing again");
+          }
+          publish(coreUrl, name, ps);
+        }
+      } catch (IOException | RuntimeException ex) {
+        logger.warn("Cannot publish parameter set " + name + " to " + coreUrl, ex);
+        published = false;
+      }
+    }
+    ps.published = published;
+  }
+
+  private String fetchVersion(String coreUrl, String name) throws IOException {
+    HttpGet httpGet = new HttpGet(coreUrl + "/config/params/" + name + "?wt=json");
+    try (CloseableHttpResponse response = httpClient.execute(httpGet)) {
+      String content = EntityUtils.toString(response.getEntity(), "UTF-8");
+      if (response.getStatusLine().getStatusCode() != HttpStatus.SC_OK) {
+        return null;
+      }
+      return Json.extractStringFrom(content, "response.params." + name + "." + VERSION_PARAM);
+    }
+  }
+
+  private void publish(String coreUrl, String name, ParamSet ps) throws IOException {
+    Map<String, Object> values = new LinkedHashMap<>();
+    for (Map.Entry<String, String[]> e : ps.params.entrySet()) {
+      String[] v = e.getValue();
+      values.put(e.getKey(), v.length == 1 ? v[0] : v);
+    }
+    values.put(VERSION_PARAM, ps.version);
+    String command = Json.toJson(Collections.singletonMap("set", Collections.singletonMap(name, values)));
+
+    HttpPost httpPost = new HttpPost(coreUrl + "/config/params");
+    httpPost.setEntity(new StringEntity(command, ContentType.APPLICATION_JSON));
+    try (CloseableHttpResponse response = httpClient.execute(httpPost)) {
+      String content = EntityUtils.toString(response.getEntity(), "UTF-8");
+      if (response.getStatusLine().getStatusCode() != HttpStatus.SC_OK) {
+        throw new IOException(response.getStatusLine() + ": " + content);
+      }
+    }
+    logger.info("Published parameter set " + name + " version " + ps.version + " to " + coreUrl);
+  }
+
+  private static String versionOf(Map<String, String[]> params) {
+    List<String> names = new ArrayList<>(params.keySet());
+    Collections.sort(names);
+    MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException ex) {
+      throw new AssertionError(ex);
+    }
+    for (String n : names) {
+      digest.update(n.getBytes(StandardCharsets.UTF_8));
+      for (String v : params.get(n)) {
+        digest.update((byte) 0);
+        digest.update(v.getBytes(StandardCharsets.UTF_8));
+      }
+      digest.update((byte) 1);
+    }
+    byte[] hash = digest.digest();
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < 8; i++) {
+      sb.append(String.format("%02x", hash[i]));
+    }
+    return sb.toString();
+  }
+}
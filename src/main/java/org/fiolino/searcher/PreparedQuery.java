@@ -0,0 +1,66 @@
+package org.fiolino.searcher;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A query whose parameters were built once, and which is reused for many requests.
+ * <p>
+ * Created by {@link QueryBuilder#prepare()}. Filters that differ per request are added there as placeholders;
+ * they refer to request parameters by Solr's parameter dereferencing, so that each request only sets these.
+ * <pre>
+ *   QueryBuilder b = searcher.createQueryBuilder(realm);
+ *   b.addFacet("brand");
+ *   b.applyPlaceholder("category", "cat");
+ *   PreparedQuery prepared = b.prepare();
+ *
+ *   QueryBuilder request = prepared.newRequest();
+ *   request.bind("cat", 17, 18);
+ *   searcher.search(request);
+ * </pre>
+ */
+public final class PreparedQuery {
+
+  private final TypeConfiguration<?> typeConfiguration;
+  private final Realm realm;
+  private final Map<String, String[]> parameters;
+  private final Set<String> placeholders;
+
+  PreparedQuery(TypeConfiguration<?> typeConfiguration, Realm realm, Map<String, String[]> parameters,
+                Set<String> placeholders) {
+    this.typeConfiguration = typeConfiguration;
+    this.realm = realm;
+    this.parameters = parameters;
+    this.placeholders = placeholders;
+  }
+
+  /**
+   * Creates a builder for one request; all placeholders must be bound before it's executed.
+   * Its query, filters, facets and sorting are those of the template and can't be changed;
+   * only the placeholders, limit and offset are set per request.
+   */
+  public QueryBuilder newRequest() {
+    return new QueryBuilder(this);
+  }
+
+  public Set<String> getPlaceholders() {
+    return placeholders;
+  }
+
+  TypeConfiguration<?> getTypeConfiguration() {
+    return typeConfiguration;
+  }
+
+  public Realm getRealm() {
+    return realm;
+  }
+
+  Map<String, String[]> getParameters() {
+    return parameters;
+  }
+
+  @Override
+  public String toString() {
+    return "PreparedQuery on " + typeConfiguration.type().getName() + " with placeholders " + placeholders;
+  }
+}
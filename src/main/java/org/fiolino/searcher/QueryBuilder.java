@@ -9,10 +9,12 @@ import org.fiolino.data.annotation.ValueRange;
 import org.fiolino.searcher.fieldhandling.DynamicFacetType;
 import org.fiolino.searcher.fieldhandling.FacetType;
 import org.fiolino.searcher.fieldhandling.FilterType;
+import org.fiolino.searcher.fieldhandling.RangeFacetType;
 import org.fiolino.searcher.result.Result;
 import org.fiolino.searcher.statement.DirectFilter;
 import org.fiolino.searcher.statement.Filter;
 import org.fiolino.searcher.statement.Statement;
+import org.fiolino.searcher.statement.TermsFilter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -45,12 +47,22 @@ public class QueryBuilder {
   private static final Pattern WEIGHT_MATCH = Pattern.compile("(\\^\\d+)?\\s+");
 
   private static final Map<ValueRange, String> rangeToFacetTypeMapping;
+  private static final Map<ValueRange, String> rangeToJsonFacetMethodMapping;
+
+  /**
+   * JSON facets return only 10 buckets by default; this keeps the classic default.
+   */
+  private static final int DEFAULT_FACET_LIMIT = 100;
   private static final Pattern TAG_PATTERN = Pattern.compile("(#([^#() ]*))");
 
   static {
     rangeToFacetTypeMapping = new EnumMap<>(ValueRange.class);
     rangeToFacetTypeMapping.put(ValueRange.LIMITED, "enum");
     rangeToFacetTypeMapping.put(ValueRange.LARGE, "fc");
+
+    rangeToJsonFacetMethodMapping = new EnumMap<>(ValueRange.class);
+    rangeToJsonFacetMethodMapping.put(ValueRange.LIMITED, "dv");
+    rangeToJsonFacetMethodMapping.put(ValueRange.LARGE, "uif");
   }
 
   private final SolrQuery solrQuery;
@@ -59,24 +71,80 @@ public class QueryBuilder {
 
   private final Set<Facet> assignedFacets = new HashSet<>();
 
+  private final Set<RangeFacetType<?>> assignedRangeFacets = new LinkedHashSet<>();
+
   private final Realm realm;
 
   private final TypeConfiguration<?> typeConfiguration;
 
   private boolean doHighlighting = true;
 
+  private FacetEngine facetEngine;
+
   private String sorting;
 
+  private String[] lookupKeys;
+
+  /**
+   * Facets and sorting are only applied once; for prepared queries, they're already part of the template.
+   */
+  private boolean finalSettingsApplied;
+
+  /**
+   * Whether this is a request of a prepared query, whose facets and sorting can't be changed.
+   */
+  private final boolean prepared;
+
+  /**
+   * The placeholder parameter names which need a value before the query can be built.
+   */
+  private final Set<String> unboundPlaceholders;
+
+  private final Set<String> placeholders;
+
   private final Measurement measurement = new Measurement();
 
+  /**
+   * All statements of this query are rendered into this one buffer.
+   */
+  private final StringBuilder renderBuffer = new StringBuilder(256);
+
   public QueryBuilder(TypeConfiguration<?> typeConfiguration, Realm realm) {
     this.typeConfiguration = typeConfiguration;
     this.realm = realm;
 
-    solrQuery = new SolrQuery();
+    solrQuery = new LayeredSolrQuery(selectBaseParameters());
+    placeholders = new LinkedHashSet<>();
+    unboundPlaceholders = new HashSet<>();
+    facetEngine = realm.getFacetEngine();
+    prepared = false;
     assignDefaults();
   }
 
+  /**
+   * Creates a builder for a single request of a prepared query.
+   */
+  QueryBuilder(PreparedQuery preparedQuery) {
+    typeConfiguration = preparedQuery.getTypeConfiguration();
+    realm = preparedQuery.getRealm();
+    solrQuery = new LayeredSolrQuery(preparedQuery.getParameters());
+    placeholders = preparedQuery.getPlaceholders();
+    unboundPlaceholders = new HashSet<>(placeholders);
+    finalSettingsApplied = true;
+    prepared = true;
+  }
+
+  /**
+   * Facets, sorting, the query and the filters of a prepared query are part of its template.
+   * The relevance sort contains the query text, and the facets exclude the tags of the filters,
+   * so none of them can be changed per request.
+   */
+  private void checkNotPrepared(String what) {
+    if (prepared) {
+      throw new IllegalStateException(what + " of a prepared query can't be changed per request");
+    }
+  }
+
   public final SolrQuery getSolrQuery() {
     return solrQuery;
   }
@@ -85,19 +153,36 @@ public class QueryBuilder {
     return realm;
   }
 
-  private void assignDefaults() {
-    for (Map.Entry<String, Map<String, Object>> e : typeConfiguration.getFields().entrySet()) {
-      String f = e.getKey();
-      for (Map.Entry<String, Object> paramEntry : e.getValue().entrySet()) {
-        String parameter = paramEntry.getKey();
-        solrQuery.add("f." + f + "." + parameter, String.valueOf(paramEntry.getValue()));
+  /**
+   * Creates the parameters that are equal for all queries of the type; these are shared by all builders.
+   */
+  static Map<String, String[]> createBaseParameters(Map<String, String[]> fieldParameters, String paramSet) {
+    SolrQuery base = new SolrQuery();
+    for (Map.Entry<String, String[]> e : fieldParameters.entrySet()) {
+      base.add(e.getKey(), e.getValue());
+    }
+    if (paramSet != null) {
+      base.set("useParams", paramSet);
+    }
+    base.addField("*");
+    base.setFacetMinCount(1);
+    base.setQuery("*:*");
+    base.set("ps", DEFAULT_SLOP);
+    return Collections.unmodifiableMap(new LinkedHashMap<>(base.getMap()));
+  }
+
+  private Map<String, String[]> selectBaseParameters() {
+    if (realm.isUsingParamSets()) {
+      Map<String, String[]> fieldParameters = typeConfiguration.getFieldParameters();
+      if (!fieldParameters.isEmpty()
+              && realm.ensureParamSet(typeConfiguration.getParamSetName(), fieldParameters)) {
+        return typeConfiguration.getParamSetBaseParameters();
       }
     }
-    solrQuery.addField("*");
-    solrQuery.setFacetMinCount(1);
-    solrQuery.setQuery("*:*");
-    setSlop(DEFAULT_SLOP);
+    return typeConfiguration.getBaseParameters();
+  }
 
+  private void assignDefaults() {
     setSorting(Sorts.RELEVANCE);
   }
 
@@ -113,6 +198,18 @@ public class QueryBuilder {
     solrQuery.setStart(offset);
   }
 
+  public FacetEngine getFacetEngine() {
+    return facetEngine;
+  }
+
+  /**
+   * Sets how the assigned facets are requested from Solr; the default comes from the realm.
+   */
+  public void setFacetEngine(FacetEngine facetEngine) {
+    checkNotPrepared("Facets");
+    this.facetEngine = facetEngine;
+  }
+
   public void setDoHighlight(boolean highlight) {
     this.doHighlighting = highlight;
   }
@@ -179,9 +276,19 @@ public class QueryBuilder {
 
   /**
    * Applies some filter.
+   *
+   * Filters are split into their AND parts, so that each is cached on its own.
+   * Requests of a prepared query can't add filters; they bind placeholders instead.
    */
   public final void apply(Statement f) {
-    f.apply(solrQuery);
+    checkNotPrepared("Filters");
+    if (f instanceof Filter) {
+      for (Filter part : ((Filter) f).canonicalize().split()) {
+        part.apply(solrQuery, renderBuffer);
+      }
+    } else {
+      f.apply(solrQuery, renderBuffer);
+    }
   }
 
   @SafeVarargs
@@ -190,20 +297,97 @@ public class QueryBuilder {
   }
 
   private Filter makeFilterWithValues(FilterType<?> filterType, Object... values) {
-    DirectFilter filter = filterType.make(values);
-    markAsFiltered(filter);
-    return filter;
+    filteredTags.add(filterType.getTagName());
+    return filterType.make(realm.getLoadedSchema(), values);
   }
 
   private Filter makeDynamicFilterWithValues(DynamicFacetType<?> facetType, String name, Object... values) {
     String encodedName = Encoder.ALL_LETTERS.encode(name);
-    DirectFilter filter = facetType.makeForName(encodedName, values);
-    markAsFiltered(filter);
-    return filter;
+    filteredTags.add(facetType.getTagName() + "_" + encodedName);
+    return facetType.makeForName(realm.getLoadedSchema(), encodedName, values);
+  }
+
+  /**
+   * Adds a filter whose values are bound later, for prepared queries.
+   *
+   * The filter refers to the request parameter of the given name; each request must bind it with
+   * {@link #bind(String, Object...)}. Facets on the same field exclude this filter, as with normal filters.
+   *
+   * @param categoryName The symbolic name of the registered filter
+   * @param parameterName The name of the request parameter; letters, digits and underscores only
+   */
+  public void applyPlaceholder(String categoryName, String parameterName) throws NoSuchFieldException {
+    FilterType<?> filterType = typeConfiguration.getFilter(categoryName);
+    if (filterType == null) {
+      throw new NoSuchFieldException("No such filter: " + categoryName);
+    }
+    if (!parameterName.matches("\\w+")) {
+      throw new IllegalArgumentException("Invalid parameter name " + parameterName);
+    }
+    if (!placeholders.add(parameterName)) {
+      throw new IllegalArgumentException("Placeholder " + parameterName + " is already used");
+    }
+    unboundPlaceholders.add(parameterName);
+    String tagName = filterType.getTagName();
+    filteredTags.add(tagName);
+    StringBuilder sb = new StringBuilder("{!terms f=").append(filterType.getSolrFieldName());
+    if (tagName != null) {
+      sb.append(" tag=").append(tagName);
+    }
+    sb.append(" separator=$").append(parameterName).append("_sep v=$").append(parameterName).append('}');
+    solrQuery.addFilterQuery(sb.toString());
   }
 
-  private void markAsFiltered(DirectFilter filter) {
-    filteredTags.add(filter.getTagName());
+  /**
+   * Binds the values of a placeholder filter. They are combined with OR.
+   */
+  public void bind(String parameterName, Object... values) {
+    if (!placeholders.contains(parameterName)) {
+      throw new IllegalArgumentException("No placeholder " + parameterName);
+    }
+    String separator = TermsFilter.findSeparator(values);
+    if (separator == null) {
+      throw new IllegalArgumentException("Values for " + parameterName + " contain all possible separators");
+    }
+    StringBuilder sb = new StringBuilder();
+    for (Object v : values) {
+      if (v == null) {
+        continue;
+      }
+      if (sb.length() > 0) {
+        sb.append(separator);
+      }
+      sb.append(v);
+    }
+    if (sb.length() == 0) {
+      throw new IllegalArgumentException("No values given for " + parameterName);
+    }
+    solrQuery.set(parameterName, sb.toString());
+    solrQuery.set(parameterName + "_sep", separator);
+    unboundPlaceholders.remove(parameterName);
+  }
+
+  /**
+   * Freezes everything configured so far into a reusable query.
+   *
+   * Facets and sorting are resolved once here. Each request then only binds its placeholder values and
+   * sets limit and offset, starting from the frozen parameters without copying them.
+   * This builder must not be used afterwards.
+   */
+  public PreparedQuery prepare() {
+    if (lookupKeys != null) {
+      throw new IllegalStateException("Key lookups can't be prepared");
+    }
+    if (!unboundPlaceholders.equals(placeholders)) {
+      throw new IllegalStateException("Placeholders must not be bound before preparing");
+    }
+    applyFinalSettings();
+    Map<String, String[]> parameters = new LinkedHashMap<>();
+    for (String name : solrQuery.getParameterNames()) {
+      parameters.put(name, solrQuery.getParams(name));
+    }
+    return new PreparedQuery(typeConfiguration, realm, Collections.unmodifiableMap(parameters),
+            Collections.unmodifiableSet(new LinkedHashSet<>(placeholders)));
   }
 
   /**
@@ -211,6 +395,7 @@ public class QueryBuilder {
    * in a batch-like type: $KEYWORD=value
    */
   public void addUserDefinedFilter(String filterQuery) throws NoSuchFieldException {
+    checkNotPrepared("Filters");
     Matcher m = FIND_KEYWORD.matcher(filterQuery);
     StringBuffer sb = new StringBuffer();
     while (m.find()) {
@@ -242,6 +427,7 @@ public class QueryBuilder {
    * @throws NoSuchFieldException If there was no such facet defined
    */
   public FacetType<?> addFacet(String categoryName, int limit) throws NoSuchFieldException {
+    checkNotPrepared("Facets");
     FacetType<?> facet = typeConfiguration.getFacetByCategory(categoryName);
     if (facet == null) {
       DynamicFacetType<?> dynamicFacetType = typeConfiguration.findDynamicFacetByCategory(categoryName);
@@ -256,6 +442,31 @@ public class QueryBuilder {
     return facet;
   }
 
+  /**
+   * Adds a facet counting a date or numeric field in buckets, as registered for a @DateFacet or
+   * with {@link TypeConfiguration#registerRangeFacet}.
+   *
+   * @param categoryName The name of the range facet
+   * @return The facet type
+   * @throws NoSuchFieldException If there was no such range facet defined
+   */
+  public RangeFacetType<?> addRangeFacet(String categoryName) throws NoSuchFieldException {
+    RangeFacetType<?> rangeFacet = typeConfiguration.getRangeFacet(categoryName);
+    if (rangeFacet == null) {
+      throw new NoSuchFieldException("No such range facet: " + categoryName);
+    }
+    addRangeFacet(rangeFacet);
+    return rangeFacet;
+  }
+
+  /**
+   * Adds a facet counting a date or numeric field in buckets.
+   */
+  public void addRangeFacet(RangeFacetType<?> rangeFacet) {
+    checkNotPrepared("Facets");
+    assignedRangeFacets.add(rangeFacet);
+  }
+
   /**
    * Adds all facets of a given type.
    * Only facets of that exact type, no subclass checking.
@@ -269,6 +480,7 @@ public class QueryBuilder {
    * Only facets of that exact type, no subclass checking.
    */
   public <T> List<FacetType<T>> addFacetsByType(Class<T> type, int limit) throws NoSuchFieldException {
+    checkNotPrepared("Facets");
     List<FacetType<T>> facetTypeList = typeConfiguration.getFacetsByType(type);
     if (facetTypeList == null) {
       throw new NoSuchFieldException("No facet with type " + type.getName());
@@ -305,6 +517,7 @@ public class QueryBuilder {
    * @throws NoSuchFieldException Checks only on existing groups, not on names
    */
   public FacetType<?> addDynamicFacet(String groupName, String name, int limit) throws NoSuchFieldException {
+    checkNotPrepared("Facets");
     DynamicFacetType<?> dynamicFacetType = typeConfiguration.findDynamicFacetByCategory(groupName);
     if (dynamicFacetType == null) {
       throw new NoSuchFieldException("No such facet: " + groupName);
@@ -341,6 +554,7 @@ public class QueryBuilder {
    * @param limit Limits the maximum number of facet results
    */
   public void addDirectFacet(String solrFieldName, String tagName, Hint hint, int limit) {
+    checkNotPrepared("Facets");
     Facet f = new Facet(solrFieldName, tagName, hint, limit);
     assignedFacets.add(f);
   }
@@ -358,17 +572,12 @@ public class QueryBuilder {
   private void assignDynamicFacet(DynamicFacetType<?> type, int limit) {
     Hint hint = type.getHint();
     String tagName = type.getTagName();
-    List<String> fieldNames = realm.getFieldNames();
-    if (logger.isDebugEnabled()) {
-      logger.debug("I got " + fieldNames.size() + " field names.");
-    }
-    List<String> matchingFacets = new ArrayList<>(fieldNames.size());
-    for (String f : fieldNames) {
-      String part = type.extractName(f);
-      if (part != null) {
-        matchingFacets.add(part);
-        addDynamicFacet(f, tagName, part, hint, limit);
-      }
+    List<DynamicFacetIndex.Entry> fields = typeConfiguration.getDynamicFacetIndex(realm).getFields(type);
+    List<String> matchingFacets = new ArrayList<>(fields.size());
+    for (DynamicFacetIndex.Entry e : fields) {
+      String part = e.getName();
+      matchingFacets.add(part);
+      addDynamicFacet(e.getFieldName(), tagName, part, hint, limit);
     }
     if (logger.isDebugEnabled()) {
       logger.debug("Added " + matchingFacets.size() + " facets for dynamic tag " + tagName + ": " + matchingFacets);
@@ -384,6 +593,7 @@ public class QueryBuilder {
    * Does not add dynamic facets, because their names are unknown.
    */
   public void addAllFacets() {
+    checkNotPrepared("Facets");
     solrQuery.setFacet(true);
     FacetType<?>[] allFacets = typeConfiguration.getAllFacets();
     for (FacetType<?> ft : allFacets) {
@@ -397,10 +607,23 @@ public class QueryBuilder {
    * @param sorting Some value that must be part of the @Sort annotation in the model
    */
   public void setSorting(String sorting) {
+    checkNotPrepared("Sorting");
     this.sorting = sorting;
   }
 
+  /**
+   * Returns the documents in index order, without calculating any score.
+   */
+  public void setSortingByIndexOrder() {
+    checkNotPrepared("Sorting");
+    this.sorting = null;
+  }
+
   private void applySorting() {
+    if (sorting == null) {
+      solrQuery.setSort("_docid_", SolrQuery.ORDER.asc);
+      return;
+    }
     if (getLimit() > 0 && Sorts.RELEVANCE.equals(sorting)) {
       String q = solrQuery.getQuery();
       if (q != null && !q.isEmpty() && !q.equals("*:*")) {
@@ -463,6 +686,7 @@ public class QueryBuilder {
    * @param mm See https://cwiki.apache.org/confluence/display/solr/The+DisMax+Query+Parser
    */
   public void setQuery(String fullText, String mm) {
+    checkNotPrepared("The query");
     if (fullText == null || fullText.trim().isEmpty()) {
       return;
     }
@@ -532,12 +756,89 @@ public class QueryBuilder {
     solrQuery.set("ps", value);
   }
 
+  /**
+   * Fetches the documents directly by their unique keys, using Solr's real-time get handler.
+   *
+   * Only the filter queries and the field list are sent then; query, facets, sorting and highlighting are ignored.
+   *
+   * @param keys The values of the unique key field
+   */
+  public void lookupByKeys(Object... keys) {
+    String[] k = new String[keys.length];
+    for (int i = 0; i < k.length; i++) {
+      k[i] = String.valueOf(keys[i]);
+    }
+    lookupKeys = k;
+    setLimit(k.length);
+  }
+
   public SolrQuery build() {
-    addFinalSettings();
+    if (lookupKeys != null) {
+      SolrQuery realTimeGet = createRealTimeGet();
+      measurement.queryBuilt();
+      return realTimeGet;
+    }
+    if (!unboundPlaceholders.isEmpty()) {
+      throw new IllegalStateException("Placeholders not bound: " + unboundPlaceholders);
+    }
+    applyFinalSettings();
+    removeDuplicateFilterQueries();
     measurement.queryBuilt();
     return solrQuery;
   }
 
+  private void removeDuplicateFilterQueries() {
+    String[] filterQueries = solrQuery.getFilterQueries();
+    if (filterQueries == null || filterQueries.length < 2) {
+      return;
+    }
+    Set<String> unique = new LinkedHashSet<>(Arrays.asList(filterQueries));
+    if (unique.size() < filterQueries.length) {
+      solrQuery.setFilterQueries(unique.toArray(new String[unique.size()]));
+    }
+  }
+
+  private void applyFinalSettings() {
+    if (!finalSettingsApplied) {
+      addFinalSettings();
+      finalSettingsApplied = true;
+    }
+  }
+
+  private SolrQuery createRealTimeGet() {
+    return createRealTimeGet(lookupKeys, solrQuery.getFilterQueries(), solrQuery.getFields());
+  }
+
+  /**
+   * The keys are always sent in the ids parameter: for a single id parameter, Solr answers with one doc
+   * instead of a document list.
+   */
+  static SolrQuery createRealTimeGet(String[] keys, String[] filterQueries, String fields) {
+    SolrQuery q = new SolrQuery();
+    q.setRequestHandler("/get");
+    StringBuilder ids = new StringBuilder();
+    for (String k : keys) {
+      if (ids.length() > 0) {
+        ids.append(',');
+      }
+      for (int i = 0, n = k.length(); i < n; i++) {
+        char ch = k.charAt(i);
+        if (ch == ',' || ch == '\\') {
+          ids.append('\\');
+        }
+        ids.append(ch);
+      }
+    }
+    q.set("ids", ids.toString());
+    if (filterQueries != null) {
+      q.setFilterQueries(filterQueries);
+    }
+    if (fields != null) {
+      q.setFields(fields);
+    }
+    return q;
+  }
+
   /**
    * This is used to measure times and delays.
    */
@@ -551,16 +852,85 @@ public class QueryBuilder {
   }
 
   private void applyAssignedFacets() {
+    if (facetEngine == FacetEngine.JSON) {
+      applyJsonFacets();
+      return;
+    }
+    for (RangeFacetType<?> r : assignedRangeFacets) {
+      applyRangeFacet(r);
+    }
     if (assignedFacets.isEmpty()) {
       return;
     }
     ValueRange bestDefault = findBestDefaultValueRange();
     configureForFacets(bestDefault);
+    FacetStatistics statistics = realm.getFacetStatistics();
+    String defaultMethod = rangeToFacetTypeMapping.get(bestDefault);
+    for (Facet f : assignedFacets) {
+      String method = f.applyTo(solrQuery, defaultMethod, filteredTags, statistics.get(f.fieldName));
+      statistics.record(f.fieldName, method);
+    }
+  }
+
+  /**
+   * Puts all facets into one json.facet parameter, except those which only need to know whether a value exists;
+   * the JSON API has no counterpart to facet.exists.
+   */
+  private void applyJsonFacets() {
+    Map<String, Object> jsonFacets = new LinkedHashMap<>();
+    FacetStatistics statistics = realm.getFacetStatistics();
     for (Facet f : assignedFacets) {
-      f.applyTo(solrQuery, bestDefault, filteredTags);
+      FacetStatistics.FieldProfile profile = statistics.get(f.fieldName);
+      String method;
+      if (f.hint == Hint.ONLY_COUNT) {
+        solrQuery.setFacet(true);
+        solrQuery.setFacetMinCount(1);
+        method = f.applyTo(solrQuery, null, filteredTags, profile);
+      } else {
+        Map<String, Object> json = f.toJson(filteredTags, profile);
+        jsonFacets.put(f.fieldName, json);
+        method = "json." + json.get("method");
+      }
+      statistics.record(f.fieldName, method);
+    }
+    for (RangeFacetType<?> r : assignedRangeFacets) {
+      jsonFacets.put(r.getKey(), rangeToJson(r));
+    }
+    if (!jsonFacets.isEmpty()) {
+      solrQuery.set("json.facet", Json.toJson(jsonFacets));
     }
   }
 
+  /**
+   * Adds a classic range facet; start, end and gap are local params, since a field can have more than one range.
+   * Empty buckets are left out, like in the JSON engine.
+   */
+  private void applyRangeFacet(RangeFacetType<?> r) {
+    solrQuery.setFacet(true);
+    StringBuilder sb = new StringBuilder("{!key=").append(r.getKey());
+    if (filteredTags.contains(r.getTagName())) {
+      sb.append(" ex=").append(r.getTagName());
+    }
+    sb.append(" facet.range.start=").append(r.getStart()).append(" facet.range.end=").append(r.getEnd())
+            .append(" facet.range.gap=").append(r.getGap())
+            .append(" facet.mincount=1}").append(r.getSolrFieldName());
+    solrQuery.add("facet.range", sb.toString());
+  }
+
+  private Map<String, Object> rangeToJson(RangeFacetType<?> r) {
+    Map<String, Object> facet = new LinkedHashMap<>();
+    facet.put("type", "range");
+    facet.put("field", r.getSolrFieldName());
+    facet.put("start", r.getStart());
+    facet.put("end", r.getEnd());
+    facet.put("gap", r.getGap());
+    facet.put("mincount", 1);
+    if (filteredTags.contains(r.getTagName())) {
+      facet.put("domain", Collections.singletonMap("excludeTags", r.getTagName()));
+    }
+    return facet;
+  }
+
   private ValueRange findBestDefaultValueRange() {
     Map<ValueRange, Integer> occurrences = new EnumMap<>(ValueRange.class);
     ValueRange mostOftenRange = null;
@@ -617,7 +987,15 @@ public class QueryBuilder {
       return fieldName.hashCode();
     }
 
-    void applyTo(SolrQuery query, ValueRange defaultRange, Collection<String> filteredTags) {
+    /**
+     * Adds this as a classic facet field.
+     *
+     * @param defaultMethod The facet.method of the query
+     * @param profile       The sampled statistics of the field, or null to rely on the hint
+     * @return The facet method used for this field
+     */
+    String applyTo(SolrQuery query, String defaultMethod, Collection<String> filteredTags,
+                   FacetStatistics.FieldProfile profile) {
       String facet;
       if (filteredTags.contains(tagName)) {
         facet = "{!ex=" + tagName + "}" + fieldName;
@@ -625,16 +1003,34 @@ public class QueryBuilder {
         facet = fieldName;
       }
       query.addFacetField(facet);
-      ValueRange range = hint.getValueRange();
-      if (range != defaultRange) {
-        query.set("f." + fieldName + ".facet.method", rangeToFacetTypeMapping.get(range));
+      String method = profile == null ? rangeToFacetTypeMapping.get(hint.getValueRange()) : profile.classicMethod();
+      if (!method.equals(defaultMethod)) {
+        query.set("f." + fieldName + ".facet.method", method);
       }
       if (hint == Hint.ONLY_COUNT) {
         query.set("f." + fieldName + ".facet.exists", true);
       }
       if (limit > 0) {
         query.set("f." + fieldName + ".facet.limit", limit);
+      } else if (profile != null) {
+        query.set("f." + fieldName + ".facet.limit", profile.defaultLimit());
+      }
+      return method;
+    }
+
+    Map<String, Object> toJson(Collection<String> filteredTags, FacetStatistics.FieldProfile profile) {
+      Map<String, Object> facet = new LinkedHashMap<>();
+      facet.put("type", "terms");
+      facet.put("field", fieldName);
+      int defaultLimit = profile == null ? DEFAULT_FACET_LIMIT : profile.defaultLimit();
+      facet.put("limit", limit > 0 ? limit : defaultLimit);
+      facet.put("mincount", 1);
+      facet.put("method", profile == null ? rangeToJsonFacetMethodMapping.get(hint.getValueRange())
+              : profile.jsonMethod());
+      if (filteredTags.contains(tagName)) {
+        facet.put("domain", Collections.singletonMap("excludeTags", tagName));
       }
+      return facet;
     }
   }
 
@@ -7,67 +7,576 @@ import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.utils.URIBuilder;
 import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
 import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.client.IdleConnectionEvictor;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
 import org.apache.http.util.EntityUtils;
 import org.apache.solr.client.solrj.SolrClient;
-import org.apache.solr.client.solrj.impl.HttpSolrClient;
-import org.fiolino.common.util.Cached;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.Closeable;
 import java.io.IOException;
+import java.lang.reflect.Method;
 import java.lang.reflect.Type;
 import java.net.URISyntaxException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Predicate;
 
 /**
  * Created by kuli on 10.03.16.
  */
-public class Realm {
+public class Realm implements Closeable {
 
     private static final Logger logger = LoggerFactory.getLogger(Realm.class);
 
     private static final Type FIELDS_RESULT_TYPE = new TypeToken<Map<String, Map<String, String>>>() {}.getType();
 
+    /**
+     * Number of threads in the default executor which runs the asynchronous searches.
+     */
+    private static final int DEFAULT_ASYNC_THREADS = 16;
+
+    /**
+     * Maximum number of threads running hedged queries; when all are busy, queries are not hedged.
+     */
+    private static final int HEDGING_THREADS = 16;
+
+    /**
+     * How long to wait before fetching a schema again that couldn't be fetched.
+     */
+    private static final long SCHEMA_RETRY_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    /**
+     * How often all replicas are pinged when there is more than one.
+     */
+    private static final long HEALTH_CHECK_SECONDS = 10;
+
     private final String url;
     private final String core;
-    private final SolrClient solrClient;
+    private final ReplicaRouter solrClient;
+    private final ScheduledExecutorService scheduler;
+
+    private volatile SchemaSnapshot schema;
+
+    /**
+     * Served while the schema can't be fetched; each realm has its own, so that nothing derived from it is shared.
+     */
+    private final SchemaSnapshot emptySchema = SchemaSnapshot.empty();
+
+    /**
+     * When the schema was last fetched again because it was empty.
+     */
+    private volatile long lastSchemaRetry = System.nanoTime();
+    private final AtomicBoolean refreshingSchema = new AtomicBoolean();
+
+    /**
+     * Everything derived from the schema so far; recalculated for a new snapshot before it gets published.
+     */
+    private final Map<Object, Function<? super SchemaSnapshot, ?>> derivations = new ConcurrentHashMap<>();
+
+    private final ConnectionSettings connectionSettings;
+    private final PoolingHttpClientConnectionManager connectionManager;
+    private final IdleConnectionEvictor connectionEvictor;
+    private final CloseableHttpClient httpClient;
+
+    private volatile Executor executor;
 
-    private final Cached<List<String>> fieldNames;
+    /**
+     * Whether the executor was created here, and so must be shut down here.
+     */
+    private boolean ownsExecutor;
 
-    private CloseableHttpClient httpClient;
+    /**
+     * Runs the requests of hedged queries. It's separate from the executor, since that also runs the waiting callers.
+     */
+    private final ThreadPoolExecutor hedgingExecutor;
+
+    private volatile int parallelIdQueries = 1;
+
+    private final ParamSets paramSets;
+    private final FacetStatistics facetStatistics;
+    private volatile boolean useParamSets;
+    private volatile FacetEngine facetEngine = FacetEngine.CLASSIC;
+
+    private volatile String uniqueKeyField;
+    private volatile boolean uniqueKeyFetched;
 
     Realm(String url, String core) {
         this(url, core, 10);
     }
 
     Realm(String url, String core, int updateIntervalInMinutes) {
-        this.url = url.endsWith("/") ? url : url + "/";
+        this(url, core, updateIntervalInMinutes, ConnectionSettings.DEFAULT);
+    }
+
+    /**
+     * Creates a realm whose Solr queries and administrative requests share one connection pool.
+     */
+    Realm(String url, String core, int updateIntervalInMinutes, ConnectionSettings connectionSettings) {
+        this(Collections.singletonList(url), core, updateIntervalInMinutes, connectionSettings);
+    }
+
+    /**
+     * Creates a realm on several replicas of the same core.
+     * <p>
+     * Each query goes to the replica with the lower recent latency out of two random healthy ones.
+     * Replicas failing the ping are taken out until they answer again.
+     *
+     * @param replicaUrls The base URLs of all Solr nodes holding the core
+     */
+    Realm(List<String> replicaUrls, String core, int updateIntervalInMinutes, ConnectionSettings connectionSettings) {
+        if (replicaUrls.isEmpty()) {
+            throw new IllegalArgumentException("No replica given for core " + core);
+        }
+        String firstUrl = replicaUrls.get(0);
+        this.url = firstUrl.endsWith("/") ? firstUrl : firstUrl + "/";
         this.core = core;
-        String full = this.url + core;
-        this.solrClient = new HttpSolrClient.Builder().withBaseSolrUrl(full).build();
-        RequestConfig requestConfig = RequestConfig.custom().setConnectTimeout(5000).setSocketTimeout(10000).build();
-        HttpClientBuilder clientBuilder = HttpClientBuilder.create().setConnectionTimeToLive(10, TimeUnit.SECONDS)
-                .setMaxConnTotal(10).setConnectionManagerShared(true).setDefaultRequestConfig(requestConfig);
+        this.connectionSettings = connectionSettings;
+        connectionManager = new PoolingHttpClientConnectionManager(
+                connectionSettings.getTimeToLiveMillis(), TimeUnit.MILLISECONDS);
+        connectionManager.setMaxTotal(connectionSettings.getMaxTotal());
+        connectionManager.setDefaultMaxPerRoute(connectionSettings.getMaxPerRoute());
+        RequestConfig requestConfig = RequestConfig.custom().setConnectTimeout(connectionSettings.getConnectTimeoutMillis())
+                .setSocketTimeout(connectionSettings.getSocketTimeoutMillis()).build();
+        long keepAlive = connectionSettings.getKeepAliveMillis();
+        HttpClientBuilder clientBuilder = HttpClientBuilder.create().setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(requestConfig)
+                .setKeepAliveStrategy((response, context) -> {
+                    long announced = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+                    return announced > 0 ? Math.min(announced, keepAlive) : keepAlive;
+                });
         httpClient = clientBuilder.build();
-        fieldNames = Cached.updateEvery(updateIntervalInMinutes).minutes().with(this::fetchFieldNames);
+        List<Replica> replicas = new ArrayList<>(replicaUrls.size());
+        for (String u : replicaUrls) {
+            replicas.add(new Replica(u, core, httpClient));
+        }
+        solrClient = new ReplicaRouter(replicas);
+        List<String> coreUrls = new ArrayList<>(replicas.size());
+        for (Replica r : replicas) {
+            coreUrls.add(r.getCoreUrl());
+        }
+        connectionEvictor = new IdleConnectionEvictor(connectionManager,
+                connectionSettings.getMaxIdleMillis(), TimeUnit.MILLISECONDS,
+                connectionSettings.getMaxIdleMillis(), TimeUnit.MILLISECONDS);
+        connectionEvictor.start();
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "searcher-" + core + "-maintenance");
+            t.setDaemon(true);
+            return t;
+        });
+        paramSets = new ParamSets(httpClient, coreUrls, scheduler);
+        facetStatistics = new FacetStatistics(httpClient, this::getCoreUrl, scheduler);
+        AtomicInteger hedgingThreads = new AtomicInteger();
+        hedgingExecutor = new ThreadPoolExecutor(0, HEDGING_THREADS, 60, TimeUnit.SECONDS, new SynchronousQueue<>(), r -> {
+            Thread t = new Thread(r, "searcher-" + core + "-hedging-" + hedgingThreads.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        if (replicas.size() > 1) {
+            scheduler.scheduleWithFixedDelay(this::checkReplicas,
+                    HEALTH_CHECK_SECONDS, HEALTH_CHECK_SECONDS, TimeUnit.SECONDS);
+        }
+        scheduler.scheduleWithFixedDelay(this::refreshSchema,
+                updateIntervalInMinutes, updateIntervalInMinutes, TimeUnit.MINUTES);
+        scheduler.scheduleWithFixedDelay(paramSets::verifyAll,
+                updateIntervalInMinutes, updateIntervalInMinutes, TimeUnit.MINUTES);
+        scheduler.scheduleWithFixedDelay(facetStatistics::sampleAll,
+                updateIntervalInMinutes, updateIntervalInMinutes, TimeUnit.MINUTES);
     }
 
+    /**
+     * Gets the client which routes all requests to the currently best replica.
+     */
     public SolrClient getSolrClient() {
         return solrClient;
     }
 
+    /**
+     * Gets clients that are bound to up to n different replicas, the preferred one first.
+     * Used to send the same query to more than one replica.
+     */
+    public List<SolrClient> getSolrClients(int n) {
+        return solrClient.pickClients(n);
+    }
+
+    /**
+     * Gets the core URLs of all replicas, with those currently considered down marked as such.
+     */
+    public List<String> getReplicaStates() {
+        List<String> states = new ArrayList<>();
+        for (Replica r : solrClient.getReplicas()) {
+            states.add(r.toString());
+        }
+        return states;
+    }
+
+    private void checkReplicas() {
+        for (Replica r : solrClient.getReplicas()) {
+            HttpGet httpGet = new HttpGet(r.getCoreUrl() + "/admin/ping");
+            addAdditionalInfo(httpGet);
+            try (CloseableHttpResponse response = httpClient.execute(httpGet)) {
+                EntityUtils.consume(response.getEntity());
+                if (response.getStatusLine().getStatusCode() == HttpStatus.SC_OK) {
+                    r.markUp();
+                } else {
+                    r.markDown(response.getStatusLine());
+                }
+            } catch (IOException | RuntimeException ex) {
+                r.markDown(ex);
+            }
+        }
+    }
+
+    /**
+     * Gets the executor which runs all asynchronous searches on this realm.
+     *
+     * If none was set, a bounded pool of daemon threads is created on first use.
+     */
+    public Executor getExecutor() {
+        Executor e = executor;
+        if (e == null) {
+            synchronized (this) {
+                e = executor;
+                if (e == null) {
+                    executor = e = createDefaultExecutor();
+                    ownsExecutor = true;
+                }
+            }
+        }
+        return e;
+    }
+
+    /**
+     * Sets the executor for asynchronous searches on this realm.
+     * The caller stays responsible for shutting it down; a previously created default pool is shut down.
+     */
+    public void setExecutor(Executor executor) {
+        if (executor == null) {
+            throw new NullPointerException("executor");
+        }
+        replaceExecutor(executor, false);
+    }
+
+    /**
+     * Runs all asynchronous searches on virtual threads, one per search.
+     * <p>
+     * If the running JVM has no virtual threads, like Java 8, this does nothing and the current executor is kept.
+     *
+     * @return Whether virtual threads are used now
+     */
+    public boolean useVirtualThreads() {
+        ExecutorService virtualThreads;
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            virtualThreads = (ExecutorService) factory.invoke(null);
+        } catch (NoSuchMethodException ex) {
+            logger.info("Virtual threads are not supported by this JVM, keeping the executor of " + this);
+            return false;
+        } catch (ReflectiveOperationException ex) {
+            logger.warn("Cannot create virtual thread executor for " + this, ex);
+            return false;
+        }
+        replaceExecutor(virtualThreads, true);
+        return true;
+    }
+
+    private synchronized void replaceExecutor(Executor executor, boolean owned) {
+        Executor previous = this.executor;
+        boolean ownedPrevious = ownsExecutor;
+        this.executor = executor;
+        ownsExecutor = owned;
+        if (ownedPrevious && previous instanceof ExecutorService) {
+            // Running searches still finish
+            ((ExecutorService) previous).shutdown();
+        }
+    }
+
+    /**
+     * Gets the bounded executor which runs the requests of hedged queries.
+     * It has no queue: when all of its threads are busy, it rejects the request, and the query is not hedged.
+     */
+    public Executor getHedgingExecutor() {
+        return hedgingExecutor;
+    }
+
+    /**
+     * Gets how many batches of an ID search may be sent to Solr at the same time.
+     */
+    public int getParallelIdQueries() {
+        return parallelIdQueries;
+    }
+
+    /**
+     * Sets how many batches of an ID search may be sent to Solr at the same time.
+     * A value of 1 sends them one after another.
+     */
+    public void setParallelIdQueries(int parallelIdQueries) {
+        if (parallelIdQueries < 1) {
+            throw new IllegalArgumentException("At least one ID query must be allowed, was " + parallelIdQueries);
+        }
+        this.parallelIdQueries = parallelIdQueries;
+    }
+
+    /**
+     * Whether per-field query defaults are stored in Solr as request parameter sets,
+     * instead of being sent with every query.
+     */
+    public boolean isUsingParamSets() {
+        return useParamSets;
+    }
+
+    /**
+     * Stores per-field query defaults in Solr as request parameter sets; queries then refer to them with useParams.
+     * The sets are published on first use and checked periodically for changes on the server.
+     */
+    public void setUseParamSets(boolean useParamSets) {
+        this.useParamSets = useParamSets;
+    }
+
+    FacetStatistics getFacetStatistics() {
+        return facetStatistics;
+    }
+
+    /**
+     * How often each faceted field was requested with which facet method, keyed by field and then by method.
+     * A field showing up with a new method means its sampled profile changed.
+     */
+    public Map<String, Map<String, Long>> getFacetMethodCounts() {
+        return facetStatistics.getMethodCounts();
+    }
+
+    /**
+     * The facet engine new queries use by default.
+     */
+    public FacetEngine getFacetEngine() {
+        return facetEngine;
+    }
+
+    public void setFacetEngine(FacetEngine facetEngine) {
+        this.facetEngine = facetEngine;
+    }
+
+    /**
+     * Makes sure a parameter set with exactly these parameters is available on all replicas.
+     * Publishing runs in the background; until it succeeded, queries send the parameters themselves.
+     *
+     * @return false if it isn't published yet, so the parameters must be sent with the query
+     */
+    boolean ensureParamSet(String name, Map<String, String[]> params) {
+        return paramSets.ensure(name, params);
+    }
+
+    private Executor createDefaultExecutor() {
+        AtomicInteger count = new AtomicInteger();
+        ThreadFactory threadFactory = r -> {
+            Thread t = new Thread(r, "searcher-" + core + "-" + count.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(DEFAULT_ASYNC_THREADS, DEFAULT_ASYNC_THREADS,
+                60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), threadFactory);
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    public ConnectionSettings getConnectionSettings() {
+        return connectionSettings;
+    }
+
+    /**
+     * Gets the number of leased, pending and available connections of the shared pool.
+     */
+    public PoolStats getConnectionStats() {
+        return connectionManager.getTotalStats();
+    }
+
     public List<String> getFieldNames() {
-        return fieldNames.get();
+        return getSchema().getFieldNames();
+    }
+
+    /**
+     * Gets all fields of the core with their doc values and type information.
+     * <p>
+     * Only the very first call waits for Solr. Afterwards, the snapshot is refreshed in the background
+     * while the previous one is still served.
+     */
+    public SchemaSnapshot getSchema() {
+        SchemaSnapshot s = schema;
+        if (s == null) {
+            synchronized (this) {
+                s = schema;
+                if (s == null) {
+                    schema = s = loadSchema();
+                }
+            }
+        }
+        if (s == emptySchema) {
+            // The last fetch failed, so try again without waiting for the next period, but not on every call
+            long now = System.nanoTime();
+            if (now - lastSchemaRetry >= SCHEMA_RETRY_NANOS) {
+                lastSchemaRetry = now;
+                refreshSchema();
+            }
+        }
+        return s;
+    }
+
+    /**
+     * Gets the schema without ever waiting for Solr.
+     * If it wasn't fetched yet, fetching starts in the background, and an empty snapshot is returned meanwhile.
+     * Use this where the schema only helps choosing between equivalent queries.
+     */
+    public SchemaSnapshot getLoadedSchema() {
+        SchemaSnapshot s = schema;
+        if (s == null) {
+            refreshSchema();
+            return emptySchema;
+        }
+        return getSchema();
+    }
+
+    /**
+     * Fetches the schema again in the background. Does nothing if a refresh is already running.
+     */
+    public void refreshSchema() {
+        if (refreshingSchema.compareAndSet(false, true)) {
+            scheduler.execute(this::refreshSchemaNow);
+        }
+    }
+
+    private void refreshSchemaNow() {
+        try {
+            SchemaSnapshot previous = schema;
+            SchemaSnapshot fetched = loadSchema();
+            if (previous == null) {
+                schema = fetched;
+            } else if (fetched != emptySchema) {
+                SchemaSnapshot next = fetched.succeeding(previous);
+                if (next != previous) {
+                    precalculate(next);
+                    logger.info("Schema of " + this + " changed to version " + next.getVersion());
+                    schema = next;
+                }
+            }
+        } finally {
+            refreshingSchema.set(false);
+        }
+    }
+
+    /**
+     * Gets some value derived from the current schema.
+     * <p>
+     * The value is calculated once per snapshot. When the schema changes, it is recalculated in the background
+     * before the new snapshot replaces the old one, so that searches never wait for it.
+     *
+     * @param key      Identifies the value; must have proper equals() and hashCode()
+     * @param function Calculates the value from a snapshot
+     */
+    public <V> V derive(Object key, Function<? super SchemaSnapshot, ? extends V> function) {
+        derivations.putIfAbsent(key, function);
+        return getSchema().derive(key, function);
+    }
+
+    /**
+     * Gets some value derived from the current schema and from a versioned configuration.
+     * <p>
+     * When a newer version of the same owner and kind is derived, all older ones are dropped.
+     *
+     * @param owner    The configuration the value belongs to
+     * @param kind     Which of the owner's values it is
+     * @param version  The configuration's version; increases whenever the value must be calculated again
+     * @param function Calculates the value from a snapshot
+     */
+    public <V> V derive(Object owner, Object kind, long version, Function<? super SchemaSnapshot, ? extends V> function) {
+        VersionedKey key = new VersionedKey(owner, kind, version);
+        SchemaSnapshot s = getSchema();
+        if (derivations.putIfAbsent(key, function) == null) {
+            Predicate<Object> outdated = k -> k instanceof VersionedKey && ((VersionedKey) k).isOutdatedBy(key);
+            derivations.keySet().removeIf(outdated);
+            s.forget(outdated);
+        }
+        return s.derive(key, function);
+    }
+
+    private static final class VersionedKey {
+        private final Object owner;
+        private final Object kind;
+        private final long version;
+
+        VersionedKey(Object owner, Object kind, long version) {
+            this.owner = owner;
+            this.kind = kind;
+            this.version = version;
+        }
+
+        boolean isOutdatedBy(VersionedKey newer) {
+            return version < newer.version && owner.equals(newer.owner) && kind.equals(newer.kind);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof VersionedKey)) {
+                return false;
+            }
+            VersionedKey other = (VersionedKey) o;
+            return version == other.version && owner.equals(other.owner) && kind.equals(other.kind);
+        }
+
+        @Override
+        public int hashCode() {
+            return (owner.hashCode() * 31 + kind.hashCode()) * 31 + Long.hashCode(version);
+        }
+
+        @Override
+        public String toString() {
+            return kind + " of " + owner + " v" + version;
+        }
+    }
+
+    private void precalculate(SchemaSnapshot snapshot) {
+        for (Map.Entry<Object, Function<? super SchemaSnapshot, ?>> e : derivations.entrySet()) {
+            try {
+                snapshot.derive(e.getKey(), e.getValue());
+            } catch (RuntimeException ex) {
+                logger.warn("Cannot derive " + e.getKey() + " from schema of " + this, ex);
+            }
+        }
+    }
+
+    private SchemaSnapshot loadSchema() {
+        try {
+            return fetchSchema();
+        } catch (RuntimeException ex) {
+            logger.warn("Cannot refresh schema of " + this, ex);
+            return emptySchema;
+        }
     }
 
-    private List<String> fetchFieldNames() {
-        try (CloseableHttpClient httpClient = getHttpClient()) {
-            URIBuilder builder = new URIBuilder(url + "/admin/luke");
+    private SchemaSnapshot fetchSchema() {
+        try {
+            URIBuilder builder = new URIBuilder(solrClient.pick().getBaseUrl() + "/admin/luke");
             builder.addParameter("numTerms", "0");
             builder.addParameter("wt", "json");
             HttpGet httpGet = new HttpGet(builder.build());
@@ -81,7 +590,7 @@ public class Realm {
                             continue;
                         }
                         logger.warn("Cannot retrieve fields for " + url + ": " + response.getStatusLine());
-                        return Collections.emptyList();
+                        return emptySchema;
                     }
 
                     String content = EntityUtils.toString(response.getEntity(), "UTF-8");
@@ -92,9 +601,9 @@ public class Realm {
                         if (count < 3) {
                             continue;
                         }
-                        return null;
+                        return emptySchema;
                     }
-                    return Collections.unmodifiableList(new ArrayList<>(fields.keySet()));
+                    return new SchemaSnapshot(fields);
                 } catch (IOException e) {
                     if (count < 3) {
                         continue;
@@ -107,14 +616,55 @@ public class Realm {
         } catch (URISyntaxException ex) {
             throw new IllegalStateException("Cannot create URI " + url + core, ex);
         }
-        return null;
+        return emptySchema;
     }
 
-    private boolean checkCoreExists() {
-        try (CloseableHttpClient httpClient = getHttpClient()) {
-            HttpGet httpGet = createGetWithContentTypeAsJson("/admin/ping");
+    /**
+     * Gets the name of the schema's unique key field.
+     *
+     * @return The field name, or null if it could not be determined
+     */
+    public String getUniqueKeyField() {
+        if (!uniqueKeyFetched) {
+            synchronized (this) {
+                if (!uniqueKeyFetched) {
+                    fetchUniqueKeyField();
+                }
+            }
+        }
+        return uniqueKeyField;
+    }
+
+    /**
+     * Keeps the result only if Solr answered; after a failure, the next call tries again.
+     */
+    private void fetchUniqueKeyField() {
+        String coreUrl = getCoreUrl();
+        try {
+            URIBuilder builder = new URIBuilder(coreUrl + "/schema/uniquekey");
+            builder.addParameter("wt", "json");
+            HttpGet httpGet = new HttpGet(builder.build());
+            addAdditionalInfo(httpGet);
+
+            try (CloseableHttpResponse response = getHttpClient().execute(httpGet)) {
+                if (response.getStatusLine().getStatusCode() != HttpStatus.SC_OK) {
+                    logger.warn("Cannot retrieve unique key for " + coreUrl + ": " + response.getStatusLine());
+                    return;
+                }
+                String content = EntityUtils.toString(response.getEntity(), "UTF-8");
+                uniqueKeyField = Json.extractStringFrom(content, "uniqueKey");
+                uniqueKeyFetched = true;
+            }
+        } catch (IOException ex) {
+            logger.warn("Cannot retrieve unique key for " + coreUrl, ex);
+        } catch (URISyntaxException ex) {
+            throw new IllegalStateException("Cannot create URI " + coreUrl, ex);
+        }
+    }
 
-            CloseableHttpResponse response = httpClient.execute(httpGet);
+    private boolean checkCoreExists(String url) {
+        HttpGet httpGet = createGetWithContentTypeAsJson(url, "/admin/ping");
+        try (CloseableHttpResponse response = httpClient.execute(httpGet)) {
             return response.getStatusLine().getStatusCode() == HttpStatus.SC_OK;
         } catch (IOException ex) {
             logger.error("Cannot get Core status", ex);
@@ -122,7 +672,7 @@ public class Realm {
         }
     }
 
-    private HttpGet createGetWithContentTypeAsJson(String path) {
+    private HttpGet createGetWithContentTypeAsJson(String url, String path) {
         HttpGet httpGet = new HttpGet(url + path);
         addAdditionalInfo(httpGet);
         return httpGet;
@@ -133,11 +683,17 @@ public class Realm {
     }
 
     public void initialize() {
-        if (checkCoreExists()) {
+        for (Replica r : solrClient.getReplicas()) {
+            initialize(r.getBaseUrl());
+        }
+    }
+
+    private void initialize(String url) {
+        if (checkCoreExists(url)) {
             return;
         }
         logger.info("Core " + core + " does not exist yet, creating...");
-        try (CloseableHttpClient httpClient = getHttpClient()) {
+        try {
             URIBuilder builder = new URIBuilder(url + "admin/cores");
             builder.addParameter("action", "CREATE");
             builder.addParameter("name", core);
@@ -169,12 +725,40 @@ public class Realm {
         }
     }
 
-    private CloseableHttpClient getHttpClient() {
+    /**
+     * Gets the core URL of the replica that should serve the next request.
+     */
+    String getCoreUrl() {
+        return solrClient.pick().getCoreUrl();
+    }
+
+    CloseableHttpClient getHttpClient() {
         return httpClient;
     }
 
+    /**
+     * Closes all pooled connections. The realm can't be used afterwards.
+     */
+    @Override
+    public void close() throws IOException {
+        scheduler.shutdownNow();
+        hedgingExecutor.shutdownNow();
+        synchronized (this) {
+            if (ownsExecutor && executor instanceof ExecutorService) {
+                ((ExecutorService) executor).shutdown();
+            }
+        }
+        connectionEvictor.shutdown();
+        try {
+            solrClient.close();
+        } finally {
+            httpClient.close();
+        }
+    }
+
     @Override
     public String toString() {
-        return url + core;
+        List<Replica> replicas = solrClient.getReplicas();
+        return replicas.size() == 1 ? url + core : core + " on " + replicas;
     }
 }
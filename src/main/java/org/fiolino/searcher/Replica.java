@@ -0,0 +1,91 @@
+package org.fiolino.searcher;
+
+import org.apache.http.client.HttpClient;
+import org.apache.solr.client.solrj.impl.HttpSolrClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * One Solr node that serves the core of a {@link Realm}, with its recent latency and health.
+ */
+final class Replica {
+
+  private static final Logger logger = LoggerFactory.getLogger(Replica.class);
+
+  /**
+   * Weight of the latest response time in the moving average.
+   */
+  private static final double DECAY = 0.3;
+
+  private final String baseUrl;
+  private final String coreUrl;
+  private final HttpSolrClient solrClient;
+  private final AtomicInteger inFlight = new AtomicInteger();
+
+  private volatile double averageNanos;
+  private volatile boolean healthy = true;
+
+  Replica(String baseUrl, String core, HttpClient httpClient) {
+    this.baseUrl = baseUrl.endsWith("/") ? baseUrl : baseUrl + "/";
+    coreUrl = this.baseUrl + core;
+    solrClient = new HttpSolrClient.Builder().withBaseSolrUrl(coreUrl).withHttpClient(httpClient).build();
+  }
+
+  String getBaseUrl() {
+    return baseUrl;
+  }
+
+  String getCoreUrl() {
+    return coreUrl;
+  }
+
+  HttpSolrClient getSolrClient() {
+    return solrClient;
+  }
+
+  boolean isHealthy() {
+    return healthy;
+  }
+
+  void started() {
+    inFlight.incrementAndGet();
+  }
+
+  void finished(long nanos, boolean successful) {
+    inFlight.decrementAndGet();
+    if (successful) {
+      synchronized (this) {
+        double avg = averageNanos;
+        averageNanos = avg == 0 ? nanos : avg + DECAY * (nanos - avg);
+      }
+    }
+  }
+
+  /**
+   * The lower, the better: the average latency, scaled by the number of requests currently waiting on this node.
+   */
+  double getScore() {
+    return averageNanos * (inFlight.get() + 1);
+  }
+
+  void markDown(Object reason) {
+    if (healthy) {
+      healthy = false;
+      logger.warn("Replica " + coreUrl + " is down: " + reason);
+    }
+  }
+
+  void markUp() {
+    if (!healthy) {
+      healthy = true;
+      logger.info("Replica " + coreUrl + " is back");
+    }
+  }
+
+  @Override
+  public String toString() {
+    return coreUrl + (healthy ? "" : " (down)");
+  }
+}
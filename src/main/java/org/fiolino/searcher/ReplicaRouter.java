@@ -0,0 +1,178 @@
+package org.fiolino.searcher;
+
+import org.apache.solr.client.solrj.SolrClient;
+import org.apache.solr.client.solrj.SolrRequest;
+import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.client.solrj.request.QueryRequest;
+import org.apache.solr.common.util.NamedList;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Sends every request to one of several replicas of the same core.
+ * <p>
+ * Replicas are chosen by the power of two choices: two random healthy replicas are compared, and the one with
+ * the lower latency score wins. This avoids herding onto the single fastest node while still avoiding slow ones.
+ * Replicas that fail with an I/O error are taken out until the health check brings them back. If a query fails
+ * that way, it is retried once on another replica.
+ */
+final class ReplicaRouter extends SolrClient {
+
+  private static final long serialVersionUID = 1L;
+
+  private final List<Replica> replicas;
+
+  ReplicaRouter(List<Replica> replicas) {
+    if (replicas.isEmpty()) {
+      throw new IllegalArgumentException("At least one replica is needed");
+    }
+    this.replicas = Collections.unmodifiableList(new ArrayList<>(replicas));
+  }
+
+  List<Replica> getReplicas() {
+    return replicas;
+  }
+
+  /**
+   * Chooses the replica for the next request.
+   */
+  Replica pick() {
+    return pick(Collections.<Replica>emptyList());
+  }
+
+  /**
+   * Gets clients bound to up to n different replicas, in the order they should be tried.
+   */
+  List<SolrClient> pickClients(int n) {
+    List<Replica> chosen = new ArrayList<>(n);
+    List<SolrClient> clients = new ArrayList<>(n);
+    Replica r;
+    while (clients.size() < n && (r = pick(chosen)) != null) {
+      chosen.add(r);
+      clients.add(new Pinned(r));
+    }
+    return clients;
+  }
+
+  /**
+   * @return null if all replicas are excluded
+   */
+  private Replica pick(Collection<Replica> excluded) {
+    List<Replica> candidates = new ArrayList<>(replicas.size());
+    for (Replica r : replicas) {
+      if (r.isHealthy() && !excluded.contains(r)) {
+        candidates.add(r);
+      }
+    }
+    if (candidates.isEmpty()) {
+      // Nothing is known to be healthy, so try anything
+      for (Replica r : replicas) {
+        if (!excluded.contains(r)) {
+          candidates.add(r);
+        }
+      }
+      if (candidates.isEmpty()) {
+        return null;
+      }
+    }
+    int n = candidates.size();
+    if (n == 1) {
+      return candidates.get(0);
+    }
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    int first = random.nextInt(n);
+    int second = random.nextInt(n - 1);
+    if (second >= first) {
+      second++;
+    }
+    Replica a = candidates.get(first);
+    Replica b = candidates.get(second);
+    return a.getScore() <= b.getScore() ? a : b;
+  }
+
+  @Override
+  @SuppressWarnings("rawtypes") // SolrClient declares the raw type
+  public NamedList<Object> request(SolrRequest request, String collection) throws SolrServerException, IOException {
+    Replica replica = pick();
+    try {
+      return request(replica, request, collection);
+    } catch (SolrServerException | IOException ex) {
+      if (replica.isHealthy() || !(request instanceof QueryRequest)) {
+        throw ex;
+      }
+      Replica other = pick(Collections.singletonList(replica));
+      if (other == null) {
+        throw ex;
+      }
+      return request(other, request, collection);
+    }
+  }
+
+  private NamedList<Object> request(Replica replica, SolrRequest<?> request, String collection)
+          throws SolrServerException, IOException {
+    long start = System.nanoTime();
+    replica.started();
+    boolean successful = false;
+    try {
+      NamedList<Object> result = replica.getSolrClient().request(request, collection);
+      successful = true;
+      return result;
+    } catch (SolrServerException ex) {
+      if (ex.getRootCause() instanceof IOException) {
+        replica.markDown(ex.getRootCause());
+      }
+      throw ex;
+    } catch (IOException ex) {
+      replica.markDown(ex);
+      throw ex;
+    } finally {
+      replica.finished(System.nanoTime() - start, successful);
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    for (Replica r : replicas) {
+      r.getSolrClient().close();
+    }
+  }
+
+  @Override
+  public String toString() {
+    return replicas.toString();
+  }
+
+  /**
+   * Sends everything to one replica, but still keeps track of its latency and health.
+   */
+  private final class Pinned extends SolrClient {
+    private static final long serialVersionUID = 1L;
+
+    private final Replica replica;
+
+    Pinned(Replica replica) {
+      this.replica = replica;
+    }
+
+    @Override
+    @SuppressWarnings("rawtypes") // SolrClient declares the raw type
+    public NamedList<Object> request(SolrRequest request, String collection) throws SolrServerException, IOException {
+      return ReplicaRouter.this.request(replica, request, collection);
+    }
+
+    @Override
+    public void close() {
+      // The router owns the replica's client
+    }
+
+    @Override
+    public String toString() {
+      return replica.toString();
+    }
+  }
+}
@@ -0,0 +1,164 @@
+package org.fiolino.searcher;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+/**
+ * Contains the fields of a Solr core as they were reported by the Luke request handler.
+ * <p>
+ * The version only increases when the fields actually change, so anything derived from the fields
+ * can be kept with the snapshot via {@link #derive(Object, Function)} and is rebuilt only after a change.
+ */
+public final class SchemaSnapshot {
+
+    /**
+     * Luke marks fields with doc values with this flag in their schema description.
+     */
+    private static final char DOC_VALUES_FLAG = 'D';
+
+    /**
+     * The default names of Solr's string, boolean and numeric field types, whose values are indexed as they are.
+     */
+    private static final Pattern UNANALYZED_TYPES = Pattern.compile("(string|boolean|[tp]?(int|long|float|double|date))s?");
+
+    private final List<String> fieldNames;
+
+    private final Set<String> docValueFields;
+
+    private final Map<String, String> fieldTypes;
+
+    private final long version;
+
+    private final ConcurrentMap<Object, Object> derived = new ConcurrentHashMap<>();
+
+    private SchemaSnapshot(SchemaSnapshot fields, long version) {
+        fieldNames = fields.fieldNames;
+        docValueFields = fields.docValueFields;
+        fieldTypes = fields.fieldTypes;
+        this.version = version;
+    }
+
+    SchemaSnapshot(Map<String, Map<String, String>> lukeFields) {
+        List<String> names = new ArrayList<>(lukeFields.size());
+        Set<String> docValues = new HashSet<>();
+        Map<String, String> types = new HashMap<>();
+        for (Map.Entry<String, Map<String, String>> e : lukeFields.entrySet()) {
+            String name = e.getKey();
+            names.add(name);
+            Map<String, String> info = e.getValue();
+            if (info == null) {
+                continue;
+            }
+            String schema = info.get("schema");
+            if (schema != null && schema.indexOf(DOC_VALUES_FLAG) >= 0) {
+                docValues.add(name);
+            }
+            String type = info.get("type");
+            if (type != null) {
+                types.put(name, type);
+            }
+        }
+        fieldNames = Collections.unmodifiableList(names);
+        docValueFields = Collections.unmodifiableSet(docValues);
+        fieldTypes = Collections.unmodifiableMap(types);
+        version = 0;
+    }
+
+    /**
+     * Creates a snapshot without fields, used while the schema can't be fetched.
+     * Its version is -1, so that the first real snapshot following it has version 0.
+     */
+    static SchemaSnapshot empty() {
+        return new SchemaSnapshot(new SchemaSnapshot(Collections.emptyMap()), -1);
+    }
+
+    /**
+     * Returns the previous snapshot if nothing changed, or a copy of this one with the next version.
+     */
+    SchemaSnapshot succeeding(SchemaSnapshot previous) {
+        if (new HashSet<>(fieldNames).equals(new HashSet<>(previous.fieldNames))
+                && docValueFields.equals(previous.docValueFields) && fieldTypes.equals(previous.fieldTypes)) {
+            return previous;
+        }
+        return new SchemaSnapshot(this, previous.version + 1);
+    }
+
+    /**
+     * Increases whenever fields were added, removed or changed.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Gets some value that is calculated from this snapshot, and calculates it only once per snapshot.
+     *
+     * @param key      Identifies the derived value; must have proper equals() and hashCode()
+     * @param function Calculates the value; may be called more than once concurrently, but only one result is kept
+     */
+    public <V> V derive(Object key, Function<? super SchemaSnapshot, ? extends V> function) {
+        @SuppressWarnings("unchecked")
+        V value = (V) derived.get(key);
+        if (value == null) {
+            value = function.apply(this);
+            @SuppressWarnings("unchecked")
+            V existing = (V) derived.putIfAbsent(key, value);
+            if (existing != null) {
+                value = existing;
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Drops derived values which are not needed anymore.
+     */
+    void forget(Predicate<Object> keys) {
+        derived.keySet().removeIf(keys);
+    }
+
+    public List<String> getFieldNames() {
+        return fieldNames;
+    }
+
+    public boolean hasDocValues(String fieldName) {
+        return docValueFields.contains(fieldName);
+    }
+
+    public Set<String> getDocValueFields() {
+        return docValueFields;
+    }
+
+    /**
+     * Gets the name of the Solr field type, like "tlong" or "string".
+     */
+    @Nullable
+    public String getFieldType(String fieldName) {
+        return fieldTypes.get(fieldName);
+    }
+
+    /**
+     * Whether the field's values are indexed without an analyzer, so that they can be matched as raw terms.
+     * Only known from the default type names; false for other types and unknown fields.
+     */
+    public boolean isUnanalyzed(String fieldName) {
+        String type = fieldTypes.get(fieldName);
+        return type != null && UNANALYZED_TYPES.matcher(type).matches();
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + " v" + version + " with " + fieldNames.size() + " fields";
+    }
+}
@@ -6,11 +6,14 @@ import org.fiolino.data.annotation.Hint;
 import org.fiolino.data.annotation.SortDirection;
 import org.fiolino.data.annotation.Sorts;
 import org.fiolino.data.annotation.Type;
+import org.fiolino.searcher.fieldhandling.DeserializationCache;
 import org.fiolino.searcher.fieldhandling.DynamicFacetType;
 import org.fiolino.searcher.fieldhandling.FacetType;
 import org.fiolino.searcher.fieldhandling.FilterType;
+import org.fiolino.searcher.fieldhandling.RangeFacetType;
 import org.fiolino.searcher.result.ResultBuilder;
 import org.fiolino.searcher.result.ResultItem;
+import org.fiolino.searcher.statement.Cardinality;
 
 import javax.annotation.Nullable;
 import java.lang.invoke.MethodHandle;
@@ -42,12 +45,33 @@ public class TypeConfiguration<T> {
 
   private final Map<Type, Field> registeredFields;
 
+  /**
+   * The per-field parameters and defaults every query starts with; null when fields were changed.
+   */
+  private volatile Map<String, String[]> baseParameters;
+
+  /**
+   * The same, but referring to the parameter set instead of containing the per-field parameters.
+   */
+  private volatile Map<String, String[]> paramSetBaseParameters;
+
+  private volatile Map<String, String[]> fieldParameters;
+
   private final Set<FullTextField> fullTextFields = new HashSet<>();
 
   private final Map<String, SortField> sortFields = new HashMap<>();
 
-  private String qf;
-  private String names;
+  private final Map<String, RangeFacetType<?>> rangeFacets = new HashMap<>();
+
+  /**
+   * Caches of deserialized relation values, by their target type; only types with a configured size have one.
+   */
+  private final Map<Class<?>, DeserializationCache> deserializationCaches = new HashMap<>();
+
+  /**
+   * Increased whenever full text fields are registered, so that derived qf strings get rebuilt.
+   */
+  private volatile int fullTextVersion;
 
   public TypeConfiguration(Class<T> modelType, FilterDomain filterDomain) {
     this.modelType = modelType;
@@ -69,6 +93,15 @@ public class TypeConfiguration<T> {
     return filterDomain.registerFilter(solrName, tagName, filterType, filterNames);
   }
 
+  /**
+   * Registers a filter on ids or relations, which is used with different values in almost every request.
+   */
+  public <F> FilterType<F> registerIdFilter(String solrName, String tagName, Class<F> filterType, String... filterNames) {
+    FilterType<F> ft = registerFilter(solrName, tagName, filterType, filterNames);
+    ft.setCardinality(Cardinality.MANY);
+    return ft;
+  }
+
   public FacetType<String> registerStringFacet(String solrName, String tagName, Hint hint, String... facetNames) {
     FacetType<String> facetType = filterDomain.registerStringFacet(solrName, tagName, hint, facetNames);
     registerField(solrName);
@@ -85,6 +118,53 @@ public class TypeConfiguration<T> {
     return filterDomain.registerFacetWith(facetHandler, solrName, tagName, targetType, hint, facetNames);
   }
 
+  /**
+   * Registers a facet counting a date or numeric field in buckets of the given gap.
+   */
+  public <F> RangeFacetType<F> registerRangeFacet(String solrName, String tagName, Class<F> type,
+                                                  String start, String end, String gap, String... facetNames) {
+    RangeFacetType<F> facetType = new RangeFacetType<>(solrName, tagName, type, start, end, gap, facetNames);
+    for (String n : facetNames) {
+      rangeFacets.put(n, facetType);
+    }
+    registerField(solrName);
+    return facetType;
+  }
+
+  @Nullable
+  DeserializationCache getDeserializationCache(Class<?> targetType) {
+    return deserializationCaches.get(targetType);
+  }
+
+  void registerDeserializationCache(DeserializationCache cache) {
+    deserializationCaches.put(cache.getType(), cache);
+  }
+
+  /**
+   * All caches of deserialized facet and relation values, to monitor their hit rates.
+   */
+  public Collection<DeserializationCache> getDeserializationCaches() {
+    return Collections.unmodifiableCollection(deserializationCaches.values());
+  }
+
+  @Nullable
+  public RangeFacetType<?> getRangeFacet(String facetName) {
+    return rangeFacets.get(facetName);
+  }
+
+  /**
+   * Finds a range facet by the key its buckets are returned under.
+   */
+  @Nullable
+  public RangeFacetType<?> getRangeFacetByKey(String key) {
+    for (RangeFacetType<?> r : rangeFacets.values()) {
+      if (r.getKey().equals(key)) {
+        return r;
+      }
+    }
+    return null;
+  }
+
   void registerDynamicFacetWith(String solrName, Hint hint, String... facetNames) {
     MethodHandle identity = MethodHandles.identity(String.class);
     registerDynamicFacetWith(identity, String.class, solrName, solrName, hint, facetNames);
@@ -105,6 +185,7 @@ public class TypeConfiguration<T> {
   private void register(String fieldName) {
     if (!fields.containsKey(fieldName)) {
       fields.put(fieldName, new HashMap<>());
+      resetBaseParameters();
     }
   }
 
@@ -124,6 +205,13 @@ public class TypeConfiguration<T> {
       throw new IllegalArgumentException("Field " + field + " not registered yet!");
     }
     parameterValueMap.put(parameter, value);
+    resetBaseParameters();
+  }
+
+  private void resetBaseParameters() {
+    baseParameters = null;
+    paramSetBaseParameters = null;
+    fieldParameters = null;
   }
 
   void registerFullTextFields(String[] fieldNames, float boost) {
@@ -132,16 +220,14 @@ public class TypeConfiguration<T> {
       filterDomain.registerFullTextField(textField);
       fullTextFields.add(textField);
     }
-    qf = null;
-    names = null;
+    fullTextVersion++;
   }
 
   void registerFullTextField(Pattern namePattern, float boost) {
     FullTextField textField = FullTextField.createDynamic(namePattern, boost);
     filterDomain.registerFullTextField(textField);
     fullTextFields.add(textField);
-    qf = null;
-    names = null;
+    fullTextVersion++;
   }
 
   void registerSortField(String sortBy, String fieldName, SortDirection direction, int order) {
@@ -166,6 +252,54 @@ public class TypeConfiguration<T> {
     return fields;
   }
 
+  /**
+   * Gets the immutable parameters all queries of this type start with.
+   */
+  Map<String, String[]> getBaseParameters() {
+    Map<String, String[]> p = baseParameters;
+    if (p == null) {
+      baseParameters = p = QueryBuilder.createBaseParameters(getFieldParameters(), null);
+    }
+    return p;
+  }
+
+  /**
+   * Gets the parameters all queries of this type start with, when the per-field parameters are published as
+   * the parameter set of {@link #getParamSetName()}.
+   */
+  Map<String, String[]> getParamSetBaseParameters() {
+    Map<String, String[]> p = paramSetBaseParameters;
+    if (p == null) {
+      paramSetBaseParameters = p = QueryBuilder.createBaseParameters(Collections.emptyMap(), getParamSetName());
+    }
+    return p;
+  }
+
+  /**
+   * Gets all f.field.parameter entries.
+   */
+  Map<String, String[]> getFieldParameters() {
+    Map<String, String[]> p = fieldParameters;
+    if (p == null) {
+      Map<String, String[]> params = new LinkedHashMap<>();
+      for (Map.Entry<String, Map<String, Object>> e : fields.entrySet()) {
+        String f = e.getKey();
+        for (Map.Entry<String, Object> paramEntry : e.getValue().entrySet()) {
+          params.put("f." + f + "." + paramEntry.getKey(), new String[] {String.valueOf(paramEntry.getValue())});
+        }
+      }
+      fieldParameters = p = Collections.unmodifiableMap(params);
+    }
+    return p;
+  }
+
+  /**
+   * The name of the request parameter set with the per-field parameters.
+   */
+  String getParamSetName() {
+    return "searcher_" + modelType.getName().replace('.', '_');
+  }
+
   @Nullable
   public FilterType<?> getFilter(String filterName) {
     return filterDomain.getFilter(filterName);
@@ -219,6 +353,14 @@ public class TypeConfiguration<T> {
     return filterDomain.getDynamicFacets();
   }
 
+  /**
+   * Gets the index of all dynamic facet fields in the realm's current schema.
+   */
+  public DynamicFacetIndex getDynamicFacetIndex(Realm realm) {
+    return realm.derive(Arrays.asList(this, DynamicFacetIndex.class),
+            s -> new DynamicFacetIndex(s.getFieldNames(), getDynamicFacets()));
+  }
+
   @Nullable
   public DynamicFacetType getDynamicFacetByGroup(String group) {
     return filterDomain.getDynamicFacetByGroup(group);
@@ -228,20 +370,20 @@ public class TypeConfiguration<T> {
     return filterDomain.getAllFacets();
   }
 
-  public synchronized String getQF(Realm realm) {
-    if (qf != null) {
-      return qf;
-    }
-    qf = FullTextField.createQF(fullTextFields, realm);
-    return qf;
+  /**
+   * Gets the qf parameter for the realm's current schema; dynamic full text fields are resolved against it.
+   */
+  public String getQF(Realm realm) {
+    return realm.derive(this, "qf", fullTextVersion,
+            s -> FullTextField.createQF(fullTextFields, s));
   }
 
-  public synchronized String getNames(Realm realm) {
-    if (names != null) {
-      return names;
-    }
-    names = FullTextField.createNames(fullTextFields, realm);
-    return names;
+  /**
+   * Gets all full text field names, as used for highlighting.
+   */
+  public String getNames(Realm realm) {
+    return realm.derive(this, "names", fullTextVersion,
+            s -> FullTextField.createNames(fullTextFields, s));
   }
 
   public String getDomainQF(Realm realm) {
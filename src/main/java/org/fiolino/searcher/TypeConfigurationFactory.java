@@ -17,6 +17,7 @@ import org.fiolino.common.reflection.Methods;
 import org.fiolino.common.util.*;
 import org.fiolino.data.annotation.*;
 import org.fiolino.data.base.Text;
+import org.fiolino.searcher.fieldhandling.DeserializationCache;
 import org.fiolino.searcher.names.*;
 import org.fiolino.searcher.result.ResultBuilder;
 import org.fiolino.searcher.result.ResultItem;
@@ -43,6 +44,11 @@ public abstract class TypeConfigurationFactory<T> extends Analyzeable {
 
     private static final String FACET_SUFFIX = "_facet";
 
+    /**
+     * How many years back the year range facet of a @DateFacet counts.
+     */
+    private static final int DATE_RANGE_YEARS = 20;
+
     private static final Logger logger = LoggerFactory.getLogger(TypeConfigurationFactory.class);
 
     private static final Selector<String[]> FIELD_NAMES = SearchService.SCHEMA.createSelector(new String[0]);
@@ -59,6 +65,8 @@ public abstract class TypeConfigurationFactory<T> extends Analyzeable {
 
     private static final Selector<String[]> FACET_NAMES = SearchService.SCHEMA.createSelector();
 
+    private static final String DESERIALIZATION_CACHE_PROPERTY = "searcher.deserializationCache.";
+
     static final Selector<NamingPolicy> NAMING_POLICY = SearchService.SCHEMA.createSelector(
             Beans.get(NamingPolicy.DEFAULT_NAME, NamingPolicy.class));
 
@@ -188,6 +196,23 @@ public abstract class TypeConfigurationFactory<T> extends Analyzeable {
         }
     }
 
+    /**
+     * Whether the field is registered as an id, so that filters on it get different values in almost every request.
+     */
+    boolean isIdField(FieldDescription field, String name) {
+        Register reg = field.getAnnotation(Register.class);
+        return reg != null && reg.fields().length == 0 && registersId(reg);
+    }
+
+    static boolean registersId(Register reg) {
+        for (Type t : reg.value()) {
+            if (t == Type.ID || t == Type.REFERENCE_ID) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     void registerForTypes(String name, Register reg, Class<?> targetType, String solrName) {
         for (Type t : reg.value()) {
             typeConfig.registerField(t, targetType, name, solrName, reg.order());
@@ -232,7 +257,7 @@ public abstract class TypeConfigurationFactory<T> extends Analyzeable {
                                            String solrName, String tagName, Class<V> targetType,
                                            Hint hint) throws ModelInconsistencyException {
 
-        MethodHandle facetHandler = deserializerBuilder.getDeserializer(targetType);
+        MethodHandle facetHandler = getDeserializer(targetType);
         if (fieldIsMap(field)) {
             if (solrName.indexOf('*') < 0) {
                 solrName += "_*";
@@ -243,6 +268,7 @@ public abstract class TypeConfigurationFactory<T> extends Analyzeable {
                     facetName, hint, facetNames);
         } else {
             typeConfig.registerFacetWith(facetHandler, solrName + FACET_SUFFIX, tagName, targetType, hint, facetNames);
+            // Selected facet values repeat across requests, so these filters stay in the filter cache
             typeConfig.registerFilter(solrName + FACET_ID_SUFFIX, tagName, Long.class, facetNames);
         }
 
@@ -280,7 +306,32 @@ public abstract class TypeConfigurationFactory<T> extends Analyzeable {
     }
 
     private void registerDeserializedRelation(FieldDescription field, final String[] solrNames) throws ModelInconsistencyException {
-        registerRelationWith(field, deserializerBuilder.getDeserializer(field.getTargetType()), solrNames);
+        registerRelationWith(field, getDeserializer(field.getTargetType()), solrNames);
+    }
+
+    /**
+     * Gets the deserializer for relations of the given type, wrapped in a cache if a size was configured for it
+     * and its instances can be shared.
+     * The size is looked up in the property searcher.deserializationCache.&lt;type name&gt;, or
+     * searcher.deserializationCache.size for all types; missing or 0 means no cache.
+     */
+    private MethodHandle getDeserializer(Class<?> targetType) throws ModelInconsistencyException {
+        MethodHandle deserializer = deserializerBuilder.getDeserializer(targetType);
+        DeserializationCache cache = typeConfig.getDeserializationCache(targetType);
+        if (cache == null) {
+            long size = getLongFromProperty(DESERIALIZATION_CACHE_PROPERTY + targetType.getName(),
+                    getLongFromProperty(DESERIALIZATION_CACHE_PROPERTY + "size", 0L));
+            if (size <= 0L) {
+                return deserializer;
+            }
+            if (!DeserializationCache.canShare(targetType)) {
+                logger.warn("Not caching deserialized " + targetType.getName() + " because it's mutable; mark it with @Immutable");
+                return deserializer;
+            }
+            cache = new DeserializationCache(targetType, size);
+            typeConfig.registerDeserializationCache(cache);
+        }
+        return cache.cached(deserializer);
     }
 
     @AnnotationInterest(INITIALIZING)
@@ -379,7 +430,11 @@ public abstract class TypeConfigurationFactory<T> extends Analyzeable {
             if (filterNames[0].length() == 0) {
                 filterNames[0] = field.getName();
             }
-            typeConfig.registerFilter(solrNames[0], null, targetType, filterNames);
+            if (isIdField(field, primary) || solrNames[0].endsWith("_rel")) {
+                typeConfig.registerIdFilter(solrNames[0], null, targetType, filterNames);
+            } else {
+                typeConfig.registerFilter(solrNames[0], null, targetType, filterNames);
+            }
         }
     }
 
@@ -489,6 +544,25 @@ public abstract class TypeConfigurationFactory<T> extends Analyzeable {
         typeConfig.registerField(monthFieldName, facet.month());
     }
 
+    /**
+     * Registers range facets on the date field itself, with the same categories and tags as the year and month
+     * facets: the years of the last two decades, and the last twelve months.
+     */
+    @AnnotationInterest(POSTPROCESSING)
+    @SuppressWarnings("unused")
+    protected void setDateRangeFacet(Container configuration, DateFacet facet) {
+        String[] fieldNames = configuration.get(FIELD_NAMES);
+        if (fieldNames.length == 0) {
+            // The date itself is not indexed
+            return;
+        }
+        String solrName = fieldNames[0];
+        typeConfig.registerRangeFacet(solrName, Strings.normalizeName(facet.year()), Date.class,
+                "NOW/YEAR-" + DATE_RANGE_YEARS + "YEARS", "NOW/YEAR+1YEAR", "+1YEAR", facet.year());
+        typeConfig.registerRangeFacet(solrName, Strings.normalizeName(facet.month()), Date.class,
+                "NOW/MONTH-11MONTHS", "NOW/MONTH+1MONTH", "+1MONTH", facet.month());
+    }
+
     private void registerSimpleFacetField(FieldDescription field, String[] filterNames, String solrName, String tagName,
                                           Class<?> targetType, Hint hint) {
         FieldType fieldType = FieldType.getDefaultFor(targetType);
@@ -594,6 +668,24 @@ public abstract class TypeConfigurationFactory<T> extends Analyzeable {
         }
     }
 
+    private long getLongFromProperty(String key, long defaultValue) {
+        String prop;
+        try {
+            prop = Beans.getProperty(key);
+        } catch (IllegalArgumentException e) {
+            return defaultValue;
+        }
+        if (prop == null) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(prop.trim());
+        } catch (NumberFormatException e) {
+            logger.warn("Property " + key + " is not a number: " + prop);
+            return defaultValue;
+        }
+    }
+
     private boolean isUnsearched(Indexed annotation) {
         return Float.isNaN(annotation.boost()) || annotation.boost() <= 0.0;
     }
@@ -914,6 +1006,15 @@ public abstract class TypeConfigurationFactory<T> extends Analyzeable {
             super.registerField(field, name, solrNames, targetType, boost);
         }
 
+        @Override
+        boolean isIdField(FieldDescription field, String name) {
+            if (registerAnnotation != null && registersId(registerAnnotation)
+                    && Arrays.asList(registerAnnotation.fields()).contains(name)) {
+                return true;
+            }
+            return super.isIdField(field, name);
+        }
+
         /**
          * This is necessary to find the name for complex queries,
          */
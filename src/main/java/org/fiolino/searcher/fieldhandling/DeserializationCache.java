@@ -0,0 +1,147 @@
+package org.fiolino.searcher.fieldhandling;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import static java.lang.invoke.MethodType.methodType;
+
+/**
+ * A bounded cache of deserialized values, keyed by their serialization.
+ *
+ * Facet buckets and relations repeat the same serialized strings in every response, so this returns one shared
+ * instance per distinct string instead of parsing it again. That's only possible for immutable types,
+ * see {@link #canShare(Class)}.
+ */
+public final class DeserializationCache {
+
+  private static final MethodHandle LOOKUP;
+
+  static {
+    try {
+      LOOKUP = MethodHandles.lookup().findVirtual(DeserializationCache.class, "lookup",
+              methodType(Object.class, MethodHandle.class, Object.class));
+    } catch (NoSuchMethodException | IllegalAccessException ex) {
+      throw new AssertionError(ex);
+    }
+  }
+
+  /**
+   * Final classes whose instances never change.
+   */
+  private static final Set<Class<?>> IMMUTABLE_VALUES = new HashSet<>(Arrays.asList(
+          String.class, Boolean.class, Character.class, Byte.class, Short.class, Integer.class, Long.class,
+          Float.class, Double.class, BigInteger.class, BigDecimal.class));
+
+  private final Class<?> type;
+  private final Cache<Object, Object> cache;
+
+  /**
+   * @param type        The deserialized type
+   * @param maximumSize Maximum number of cached instances
+   * @throws IllegalArgumentException If the type's instances can't be shared
+   */
+  public DeserializationCache(Class<?> type, long maximumSize) {
+    if (!canShare(type)) {
+      throw new IllegalArgumentException(type.getName() + " is not immutable; mark it with @Immutable to cache it");
+    }
+    this.type = type;
+    cache = Caffeine.newBuilder().maximumSize(maximumSize).recordStats().build();
+  }
+
+  /**
+   * Whether the instances of a type can be shared between results and threads. That's the case for types marked
+   * with {@link Immutable}, and for types whose fields are all final and of such types themselves.
+   */
+  public static boolean canShare(Class<?> type) {
+    return canShare(type, new HashSet<>());
+  }
+
+  private static boolean canShare(Class<?> type, Set<Class<?>> visited) {
+    if (type.isPrimitive() || type.isEnum() || IMMUTABLE_VALUES.contains(type) || type.isAnnotationPresent(Immutable.class)) {
+      return true;
+    }
+    if (type.isArray() || type.isInterface()) {
+      return false;
+    }
+    if (!visited.add(type)) {
+      // Cyclic reference, checked further up
+      return true;
+    }
+    for (Class<?> c = type; c != Object.class; c = c.getSuperclass()) {
+      for (Field f : c.getDeclaredFields()) {
+        int modifiers = f.getModifiers();
+        if (Modifier.isStatic(modifiers)) {
+          continue;
+        }
+        if (!Modifier.isFinal(modifiers) || !canShare(f.getType(), visited)) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Wraps a deserializer so that it looks up this cache first.
+   *
+   * @param deserializer Accepts the serialization as its only argument
+   * @return A handle of the same type as the deserializer
+   */
+  public MethodHandle cached(MethodHandle deserializer) {
+    MethodType deserializerType = deserializer.type();
+    MethodHandle generic = deserializer.asType(methodType(Object.class, Object.class));
+    return MethodHandles.insertArguments(LOOKUP, 0, this, generic).asType(deserializerType);
+  }
+
+  @SuppressWarnings("unused")
+  private Object lookup(MethodHandle deserializer, Object serialization) throws Throwable {
+    if (serialization == null) {
+      return deserializer.invokeExact(serialization);
+    }
+    Object value = cache.getIfPresent(serialization);
+    if (value == null) {
+      value = deserializer.invokeExact(serialization);
+      if (value != null) {
+        Object existing = cache.asMap().putIfAbsent(serialization, value);
+        if (existing != null) {
+          value = existing;
+        }
+      }
+    }
+    return value;
+  }
+
+  public Class<?> getType() {
+    return type;
+  }
+
+  public long getSize() {
+    cache.cleanUp();
+    return cache.estimatedSize();
+  }
+
+  public double getHitRate() {
+    return cache.stats().hitRate();
+  }
+
+  public CacheStats getStats() {
+    return cache.stats();
+  }
+
+  @Override
+  public String toString() {
+    return "Deserialization cache for " + type.getName() + " with " + cache.estimatedSize() + " entries: " + cache.stats();
+  }
+}
@@ -2,7 +2,9 @@ package org.fiolino.searcher.fieldhandling;
 
 import org.fiolino.common.util.Strings;
 import org.fiolino.data.annotation.Hint;
+import org.fiolino.searcher.SchemaSnapshot;
 import org.fiolino.searcher.statement.DirectFilter;
+import org.fiolino.searcher.statement.Filter;
 
 import java.lang.invoke.MethodHandle;
 import java.util.regex.Matcher;
@@ -74,8 +76,16 @@ public class DynamicFacetType<T> extends DeserializingFacetType<T> {
     return null;
   }
 
+  /**
+   * Creates a filter on the given values, using the terms query parser for long value lists.
+   */
+  public Filter makeForName(SchemaSnapshot schema, String name, Object... values) {
+    String solrFieldName = getSolrFieldNameFor(solrFilterName, name);
+    return make(schema, solrFieldName, getTagName() + "_" + name, values);
+  }
+
   public DirectFilter makeForName(String name, Object... values) {
     String solrFieldName = getSolrFieldNameFor(solrFilterName, name);
-    return new DirectFilter(solrFieldName, getTagName() + "_" + name, values);
+    return new DirectFilter(solrFieldName, getTagName() + "_" + name, getCardinality(), values);
   }
 }
@@ -1,12 +1,22 @@
 package org.fiolino.searcher.fieldhandling;
 
+import org.fiolino.searcher.SchemaSnapshot;
+import org.fiolino.searcher.statement.Cardinality;
 import org.fiolino.searcher.statement.DirectFilter;
+import org.fiolino.searcher.statement.Filter;
+import org.fiolino.searcher.statement.TermsFilter;
+import org.fiolino.searcher.statement.TermsMethod;
 
 /**
  * Created by kuli on 23.03.15.
  */
 public class FilterType<T> extends SolrType<T> {
 
+  /**
+   * From this number of values on, filters on unanalyzed fields use the terms query parser instead of a boolean query.
+   */
+  public static final int DEFAULT_TERMS_THRESHOLD = 32;
+
   private final String solrFieldName;
 
   /**
@@ -14,6 +24,10 @@ public class FilterType<T> extends SolrType<T> {
    */
   private final String tagName;
 
+  private volatile Cardinality cardinality = Cardinality.FEW;
+
+  private volatile int termsThreshold = DEFAULT_TERMS_THRESHOLD;
+
   public FilterType(String solrFieldName, String tagName, Class<T> type, String... categories) {
     super(type, categories);
     this.solrFieldName = solrFieldName;
@@ -28,7 +42,74 @@ public class FilterType<T> extends SolrType<T> {
     return tagName;
   }
 
+  public Cardinality getCardinality() {
+    return cardinality;
+  }
+
+  /**
+   * Hints how many distinct values this filter is used with, which decides whether Solr caches it.
+   */
+  public void setCardinality(Cardinality cardinality) {
+    this.cardinality = cardinality;
+  }
+
+  public int getTermsThreshold() {
+    return termsThreshold;
+  }
+
+  /**
+   * Sets from which number of values on the terms query parser is used.
+   */
+  public void setTermsThreshold(int termsThreshold) {
+    this.termsThreshold = termsThreshold;
+  }
+
   public DirectFilter make(Object... values) {
-    return new DirectFilter(getSolrFieldName(), getTagName(), values);
+    return new DirectFilter(getSolrFieldName(), getTagName(), cardinality, values);
+  }
+
+  /**
+   * Creates a filter on the given values, using the terms query parser for long value lists.
+   * Its method is chosen from the field in the schema and the number of values.
+   * <p>
+   * The terms query parser skips the field's query analyzer, so it's only used on fields the schema reports as
+   * unanalyzed; on others, a long list would match differently than a short one.
+   */
+  public Filter make(SchemaSnapshot schema, Object... values) {
+    return make(schema, getSolrFieldName(), getTagName(), values);
+  }
+
+  Filter make(SchemaSnapshot schema, String solrFieldName, String tagName, Object... values) {
+    int count = countValues(values);
+    if (count < termsThreshold || !schema.isUnanalyzed(solrFieldName)) {
+      return new DirectFilter(solrFieldName, tagName, cardinality, values);
+    }
+    TermsMethod method = TermsMethod.choose(getType(), schema.hasDocValues(solrFieldName), count);
+    return new TermsFilter(solrFieldName, tagName, cardinality, method, values);
+  }
+
+  /**
+   * Counts the values, expanding collections.
+   *
+   * @return -1 if there are null values, which the terms query parser can't express
+   */
+  private static int countValues(Object[] values) {
+    int count = 0;
+    for (Object v : values) {
+      if (v == null) {
+        return -1;
+      }
+      if (v instanceof Iterable) {
+        for (Object each : (Iterable<?>) v) {
+          if (each == null) {
+            return -1;
+          }
+          count++;
+        }
+      } else {
+        count++;
+      }
+    }
+    return count;
   }
 }
@@ -0,0 +1,16 @@
+package org.fiolino.searcher.fieldhandling;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+import static java.lang.annotation.ElementType.TYPE;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+/**
+ * Marks a relation type whose instances are never modified after deserialization,
+ * so that a {@link DeserializationCache} may share them between results.
+ */
+@Retention(RUNTIME)
+@Target(TYPE)
+public @interface Immutable {
+}
@@ -0,0 +1,67 @@
+package org.fiolino.searcher.fieldhandling;
+
+import java.time.Instant;
+import java.util.Date;
+
+/**
+ * A facet which counts the values of a date or numeric field in buckets of equal size.
+ *
+ * Solr computes the buckets from the field's index or docValues, so no extra terms field is needed.
+ * Start, end and gap are given in Solr's syntax, like "NOW/YEAR-10YEARS" and "+1YEAR" for dates, or plain numbers.
+ */
+public class RangeFacetType<T> extends FilterType<T> {
+  private final String start;
+  private final String end;
+  private final String gap;
+
+  public RangeFacetType(String solrFieldName, String tagName, Class<T> type, String start, String end, String gap,
+                        String... categories) {
+    super(solrFieldName, tagName, type, categories);
+    if (!Date.class.equals(type) && !Number.class.isAssignableFrom(type)) {
+      throw new IllegalArgumentException("Range facets need dates or numbers, not " + type.getName());
+    }
+    this.start = start;
+    this.end = end;
+    this.gap = gap;
+  }
+
+  public String getStart() {
+    return start;
+  }
+
+  public String getEnd() {
+    return end;
+  }
+
+  public String getGap() {
+    return gap;
+  }
+
+  /**
+   * The name the buckets are returned under; different from the field name, since a field can have several ranges.
+   */
+  public String getKey() {
+    return "range_" + getTagName();
+  }
+
+  /**
+   * Converts the lower bound of a bucket as returned by Solr.
+   */
+  @Override
+  public T get(String serialization) {
+    Class<T> type = getType();
+    Object value;
+    if (Date.class.equals(type)) {
+      value = Date.from(Instant.parse(serialization));
+    } else if (Integer.class.equals(type)) {
+      value = Integer.valueOf(serialization);
+    } else if (Long.class.equals(type)) {
+      value = Long.valueOf(serialization);
+    } else if (Float.class.equals(type)) {
+      value = Float.valueOf(serialization);
+    } else {
+      value = Double.valueOf(serialization);
+    }
+    return type.cast(value);
+  }
+}
@@ -0,0 +1,28 @@
+package org.fiolino.searcher.result;
+
+import org.fiolino.searcher.fieldhandling.RangeFacetType;
+
+import java.util.List;
+
+/**
+ * The buckets of a range facet; each item's value is the lower bound of its bucket.
+ */
+public class RangeFacetResult<T> extends FacetResult<T> {
+  private final RangeFacetType<T> rangeType;
+
+  RangeFacetResult(RangeFacetType<T> type, List<SingleFacetItem<T>> items) {
+    super(type, items);
+    rangeType = type;
+  }
+
+  public RangeFacetType<T> getRangeType() {
+    return rangeType;
+  }
+
+  /**
+   * The size of each bucket, in Solr's syntax.
+   */
+  public String getGap() {
+    return rangeType.getGap();
+  }
+}
@@ -24,6 +24,8 @@ public class Result<T> {
 
   private final List<DynamicFacetResult<?>> dynamicFacets = new ArrayList<>();
 
+  private final Map<String, RangeFacetResult<?>> rangeFacets = new HashMap<>();
+
   private final List<T> items;
 
   private final Map<Object, ResultItem<?>> itemsByID = new HashMap<>();
@@ -91,6 +93,27 @@ public class Result<T> {
     return dynamicFacets;
   }
 
+  void addRangeFacet(RangeFacetResult<?> facet) {
+    for (String c : facet.getSolrType().getCategories()) {
+      rangeFacets.put(c, facet);
+    }
+  }
+
+  /**
+   * Gets the buckets of a range facet of a specific category and type.
+   * Returns null if there is no such facet, or if the type does not match.
+   */
+  @Nullable
+  public <F> RangeFacetResult<? extends F> getRangeFacet(String category, Class<F> type) {
+    RangeFacetResult<?> facet = rangeFacets.get(category);
+    if (facet == null || !type.isAssignableFrom(facet.getSolrType().getType())) {
+      return null;
+    }
+    @SuppressWarnings("unchecked")
+    RangeFacetResult<? extends F> casted = (RangeFacetResult<? extends F>) facet;
+    return casted;
+  }
+
   public void addItem(ResultItem<T> item) {
     addItem(item.getId(), item);
   }
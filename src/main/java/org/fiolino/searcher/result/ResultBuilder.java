@@ -2,25 +2,31 @@ package org.fiolino.searcher.result;
 
 import org.apache.solr.client.solrj.response.FacetField;
 import org.apache.solr.client.solrj.response.QueryResponse;
+import org.apache.solr.client.solrj.response.RangeFacet;
 import org.apache.solr.client.solrj.response.SpellCheckResponse;
 import org.apache.solr.client.solrj.response.SpellCheckResponse.Collation;
 import org.apache.solr.common.SolrDocument;
+import org.apache.solr.common.util.NamedList;
 import org.fiolino.common.analyzing.ModelInconsistencyException;
 import org.fiolino.common.processing.Processor;
 import org.fiolino.common.util.Encoder;
 import org.fiolino.common.util.Instantiator;
 import org.fiolino.data.base.Text;
+import org.fiolino.searcher.DynamicFacetIndex;
 import org.fiolino.searcher.QueryBuilder;
+import org.fiolino.searcher.Realm;
 import org.fiolino.searcher.TypeConfiguration;
 import org.fiolino.searcher.TypeConfigurationFactory;
 import org.fiolino.searcher.fieldhandling.DynamicFacetType;
 import org.fiolino.searcher.fieldhandling.FacetType;
+import org.fiolino.searcher.fieldhandling.RangeFacetType;
 import org.fiolino.searcher.fieldhandling.SolrType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Date;
 import java.util.List;
 import java.util.Map;
 
@@ -61,7 +67,11 @@ public final class ResultBuilder<T> {
   }
 
   public void addMetaInformation(QueryBuilder builder, Result<?> result, QueryResponse response) {
-    addFacetFields(response.getFacetFields(), result);
+    addFacetFields(builder.getRealm(), response.getFacetFields(), result);
+    addFacetFields(builder.getRealm(), readJsonFacets(response, result), result);
+    @SuppressWarnings({"rawtypes", "unchecked"}) // SolrJ returns a list of raw range facets
+    List<RangeFacet<?, ?>> rangeFacets = (List) response.getFacetRanges();
+    addRangeFacets(rangeFacets, result);
     addHighlightInfo(response.getHighlighting(), result);
     if (builder.getLimit() > 0) {
       addDidYouMean(response.getSpellCheckResponse(), result);
@@ -80,14 +90,18 @@ public final class ResultBuilder<T> {
       }
     }
 
-  private void addFacetFields(Iterable<FacetField> facetFields, Result<?> result) {
+  private void addFacetFields(Realm realm, Iterable<FacetField> facetFields, Result<?> result) {
     if (facetFields != null) {
+      DynamicFacetIndex dynamicFacetIndex = null;
       for (FacetField ff : facetFields) {
         FacetResult<?> facetResult;
         String name = ff.getName();
         FacetType<?> facetType = typeConfig.getFacetByFieldName(name);
         if (facetType == null) {
-          DynamicFacetResult<?> dynamicFacetResult = getDynamicFacetResult(ff);
+          if (dynamicFacetIndex == null) {
+            dynamicFacetIndex = typeConfig.getDynamicFacetIndex(realm);
+          }
+          DynamicFacetResult<?> dynamicFacetResult = getDynamicFacetResult(dynamicFacetIndex, ff);
           if (dynamicFacetResult == null) {
             continue;
           }
@@ -100,9 +114,74 @@ public final class ResultBuilder<T> {
     }
   }
 
-  private DynamicFacetResult<?> getDynamicFacetResult(FacetField ff) {
+  private void addRangeFacets(List<RangeFacet<?, ?>> rangeFacets, Result<?> result) {
+    if (rangeFacets == null) {
+      return;
+    }
+    for (RangeFacet<?, ?> rf : rangeFacets) {
+      RangeFacetType<?> rangeType = typeConfig.getRangeFacetByKey(rf.getName());
+      if (rangeType == null) {
+        logger.info("No such range facet: " + rf.getName());
+        continue;
+      }
+      FacetField ff = new FacetField(rf.getName());
+      for (RangeFacet.Count count : rf.getCounts()) {
+        ff.add(count.getValue(), count.getCount());
+      }
+      result.addRangeFacet(getRangeFacetResult(rangeType, ff));
+    }
+  }
+
+  private <V> RangeFacetResult<V> getRangeFacetResult(RangeFacetType<V> rangeType, FacetField ff) {
+    return new RangeFacetResult<>(rangeType, collectFacetCounts(rangeType, ff));
+  }
+
+  /**
+   * Converts the terms facets of a json.facet response into facet fields, as returned by classic faceting.
+   * Range facets are added to the result directly.
+   */
+  private List<FacetField> readJsonFacets(QueryResponse response, Result<?> result) {
+    Object facets = response.getResponse().get("facets");
+    if (!(facets instanceof NamedList)) {
+      return null;
+    }
+    NamedList<?> facetList = (NamedList<?>) facets;
+    List<FacetField> facetFields = new ArrayList<>(facetList.size());
+    for (int i = 0, n = facetList.size(); i < n; i++) {
+      Object facet = facetList.getVal(i);
+      if (!(facet instanceof NamedList)) {
+        // The overall count
+        continue;
+      }
+      Object buckets = ((NamedList<?>) facet).get("buckets");
+      if (!(buckets instanceof List)) {
+        continue;
+      }
+      FacetField ff = new FacetField(facetList.getName(i));
+      for (Object bucket : (List<?>) buckets) {
+        NamedList<?> b = (NamedList<?>) bucket;
+        Object value = b.get("val");
+        String name = value instanceof Date ? ((Date) value).toInstant().toString() : String.valueOf(value);
+        ff.add(name, ((Number) b.get("count")).longValue());
+      }
+      RangeFacetType<?> rangeType = typeConfig.getRangeFacetByKey(ff.getName());
+      if (rangeType == null) {
+        facetFields.add(ff);
+      } else {
+        result.addRangeFacet(getRangeFacetResult(rangeType, ff));
+      }
+    }
+    return facetFields;
+  }
+
+  private DynamicFacetResult<?> getDynamicFacetResult(DynamicFacetIndex index, FacetField ff) {
 
     String name = ff.getName();
+    DynamicFacetIndex.Entry entry = index.getByFieldName(name);
+    if (entry != null) {
+      return getSingleDynamicFacetResult(ff, name, entry.getFacetType(), entry.getName());
+    }
+    // Fields added to Solr after the last schema refresh
     for (DynamicFacetType<?> ft : typeConfig.getDynamicFacets()) {
       String extractedName = ft.extractName(name);
       if (extractedName != null) {
@@ -7,23 +7,47 @@ import org.apache.solr.client.solrj.response.QueryResponse;
 import org.apache.solr.client.solrj.response.TermsResponse.Term;
 import org.apache.solr.common.SolrDocument;
 import org.apache.solr.common.SolrDocumentList;
+import org.apache.solr.common.params.CursorMarkParams;
 import org.fiolino.common.analyzing.ModelInconsistencyException;
 import org.fiolino.common.util.Instantiator;
 import org.fiolino.searcher.*;
 import org.fiolino.searcher.NoSuchFieldException;
 import org.fiolino.searcher.fieldhandling.FacetType;
+import org.fiolino.searcher.fieldhandling.FilterType;
 import org.fiolino.searcher.result.Result;
 import org.fiolino.searcher.result.ResultBuilder;
 import org.fiolino.searcher.result.ResultItem;
+import org.fiolino.searcher.statement.Cardinality;
 import org.fiolino.searcher.statement.Filter;
+import org.fiolino.searcher.statement.TermsFilter;
+import org.fiolino.searcher.statement.TermsMethod;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Created by kuli on 08.01.16.
@@ -32,12 +56,32 @@ abstract class AbstractSearcher<T> implements Searcher<T> {
 
   private static final Logger logger = LoggerFactory.getLogger(AbstractSearcher.class);
 
+  /**
+   * The initial number of ids per query; adapted later by the observed latency.
+   */
   protected static final int MAX_ID_QUERY = 100;
 
+  private static final int DEFAULT_STREAM_PAGE_SIZE = 500;
+
+  private static final int MAX_STREAM_PAGE_SIZE = 10000;
+
   private final TypeConfiguration<T> typeConfiguration;
 
   private final ResultBuilder<T> resultBuilder;
 
+  private final Map<Realm, IdBatchSizer> batchSizers = new ConcurrentHashMap<>();
+
+  private final ExportEngine exportEngine;
+
+  private volatile HedgingPolicy hedgingPolicy;
+
+  private volatile ResponseCache responseCache;
+
+  /**
+   * Queries currently sent to Solr; identical queries wait for these instead of being sent again.
+   */
+  private final Map<QueryKey, CompletableFuture<QueryResponse>> inFlight = new ConcurrentHashMap<>();
+
   public AbstractSearcher(TypeConfiguration<T> typeConfiguration, Instantiator instantiator) {
     this.typeConfiguration = typeConfiguration;
     try {
@@ -45,6 +89,7 @@ abstract class AbstractSearcher<T> implements Searcher<T> {
     } catch (ModelInconsistencyException ex) {
       throw new AssertionError(ex);
     }
+    exportEngine = new ExportEngine(typeConfiguration);
 
     registerFields();
   }
@@ -97,17 +142,177 @@ abstract class AbstractSearcher<T> implements Searcher<T> {
     SolrQuery q = builder.build();
     logger.info(q.toString());
 
-    Realm realm = builder.getRealm();
-    SolrClient solrClient = realm.getSolrClient();
-    QueryResponse response;
+    return send(builder.getRealm(), q);
+  }
+
+  @Override
+  public void setHedgingPolicy(HedgingPolicy hedgingPolicy) {
+    this.hedgingPolicy = hedgingPolicy;
+  }
+
+  @Override
+  public HedgingPolicy getHedgingPolicy() {
+    return hedgingPolicy;
+  }
+
+  @Override
+  public void setResponseCache(ResponseCache responseCache) {
+    this.responseCache = responseCache;
+  }
+
+  @Override
+  public ResponseCache getResponseCache() {
+    return responseCache;
+  }
+
+  private QueryResponse send(Realm realm, SolrQuery q) {
+    if (isRealTimeGet(q)) {
+      return sendUncached(realm, q);
+    }
+    QueryKey key = QueryKey.of(realm, q);
+    ResponseCache cache = responseCache;
+    if (cache != null) {
+      QueryResponse response = cache.getIfPresent(key);
+      if (response != null) {
+        return response;
+      }
+    }
+
+    CompletableFuture<QueryResponse> own = new CompletableFuture<>();
+    CompletableFuture<QueryResponse> running = inFlight.putIfAbsent(key, own);
+    if (running != null) {
+      if (logger.isDebugEnabled()) {
+        logger.debug("Waiting for identical query " + key);
+      }
+      return await(running);
+    }
     try {
-      response = sendQueryToSolr(solrClient, q);
+      QueryResponse response = sendUncached(realm, q);
+      if (cache != null) {
+        cache.put(key, response);
+      }
+      own.complete(response);
+      return response;
+    } catch (RuntimeException | Error ex) {
+      own.completeExceptionally(ex);
+      throw ex;
+    } finally {
+      inFlight.remove(key, own);
+    }
+  }
+
+  /**
+   * Real-time gets must see the latest updates, so they are never cached.
+   */
+  private static boolean isRealTimeGet(SolrQuery q) {
+    return "/get".equals(q.getRequestHandler());
+  }
+
+  private QueryResponse sendUncached(Realm realm, SolrQuery q) {
+    HedgingPolicy policy = hedgingPolicy;
+    if (policy != null) {
+      List<SolrClient> clients = realm.getSolrClients(2);
+      if (clients.size() > 1) {
+        return sendHedged(realm.getHedgingExecutor(), clients, q, policy);
+      }
+    }
+    return query(realm.getSolrClient(), q);
+  }
+
+  private QueryResponse query(SolrClient solrClient, SolrQuery q) {
+    try {
+      return sendQueryToSolr(solrClient, q);
     } catch (IOException | SolrServerException ex) {
       throw new RuntimeException("Solr server failed", ex);
     }
+  }
+
+  /**
+   * Sends the query to the first replica, and to the second one as well if the first didn't answer in time.
+   * The first successful response wins. The losing request can't be aborted once it's on the wire;
+   * it runs until Solr answers and its response is dropped.
+   * <p>
+   * A blocking request can't be abandoned by its caller, so the first request only runs on the hedging executor
+   * if a hedge is possible at all; otherwise, or if the executor is busy, it runs on the calling thread.
+   */
+  private QueryResponse sendHedged(Executor executor, List<SolrClient> clients, SolrQuery q, HedgingPolicy policy) {
+    policy.requestStarted();
+    long start = System.nanoTime();
+    CompletableFuture<QueryResponse> primary = null;
+    if (policy.canHedge()) {
+      try {
+        primary = CompletableFuture.supplyAsync(() -> query(clients.get(0), q), executor);
+      } catch (RejectedExecutionException ex) {
+        // All hedging threads are busy
+      }
+    }
+    if (primary == null) {
+      QueryResponse response = query(clients.get(0), q);
+      policy.record(System.nanoTime() - start);
+      return response;
+    }
+    primary.thenRun(() -> policy.record(System.nanoTime() - start));
+    try {
+      return primary.get(policy.getDelayNanos(), TimeUnit.NANOSECONDS);
+    } catch (TimeoutException ex) {
+      // Too slow, hedge below
+    } catch (ExecutionException ex) {
+      throw rethrow(ex.getCause());
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException("Interrupted while waiting for Solr", ex);
+    }
+    if (!policy.tryHedge()) {
+      return await(primary);
+    }
+
+    CompletableFuture<QueryResponse> hedge;
+    try {
+      hedge = CompletableFuture.supplyAsync(() -> query(clients.get(1), q), executor);
+    } catch (RejectedExecutionException ex) {
+      policy.hedgeRejected();
+      return await(primary);
+    }
+    CompletableFuture<QueryResponse> first = new CompletableFuture<>();
+    AtomicInteger failures = new AtomicInteger();
+    BiConsumer<QueryResponse, Throwable> handler = (r, ex) -> {
+      if (ex == null) {
+        first.complete(r);
+      } else if (failures.incrementAndGet() == 2) {
+        first.completeExceptionally(ex);
+      }
+    };
+    primary.whenComplete(handler);
+    hedge.whenComplete(handler);
+
+    QueryResponse response = await(first);
+    if (hedge.isDone() && !hedge.isCompletedExceptionally() && hedge.join() == response) {
+      policy.hedgeWon();
+      primary.cancel(false);
+    } else {
+      hedge.cancel(false);
+    }
     return response;
   }
 
+  private static QueryResponse await(CompletableFuture<QueryResponse> future) {
+    try {
+      return future.join();
+    } catch (CompletionException ex) {
+      throw rethrow(ex.getCause());
+    }
+  }
+
+  private static RuntimeException rethrow(Throwable t) {
+    if (t instanceof RuntimeException) {
+      return (RuntimeException) t;
+    }
+    if (t instanceof Error) {
+      throw (Error) t;
+    }
+    return new RuntimeException("Solr server failed", t);
+  }
+
   protected ResultBuilder<T> getResultBuilder() {
     return resultBuilder;
   }
@@ -122,6 +327,58 @@ abstract class AbstractSearcher<T> implements Searcher<T> {
     return result;
   }
 
+  @Override
+  public CompletableFuture<Result<T>> searchAsync(QueryBuilder builder) {
+    builder.getMeasurement().submitted();
+    return CompletableFuture.supplyAsync(() -> {
+      builder.getMeasurement().dispatched();
+      return search(builder);
+    }, builder.getRealm().getExecutor());
+  }
+
+  @Override
+  public Stream<T> stream(QueryBuilder builder) {
+    Integer limit = builder.getLimit();
+    int pageSize = limit == null || limit <= 0 || limit > MAX_STREAM_PAGE_SIZE ? DEFAULT_STREAM_PAGE_SIZE : limit;
+    builder.setLimit(pageSize);
+    builder.setOffset(0);
+    preExecute(builder);
+    SolrQuery q = builder.build();
+    q.setFacet(false);
+    // The JSON Facet API ignores facet=false
+    q.remove("json.facet");
+    q.setHighlight(false);
+
+    String uniqueKey = builder.getRealm().getUniqueKeyField();
+    if (uniqueKey == null) {
+      throw new IllegalStateException("Cannot stream from " + builder.getRealm() + " without a unique key field");
+    }
+    if (!isSortedBy(q, uniqueKey)) {
+      q.addSort(uniqueKey, SolrQuery.ORDER.asc);
+    }
+    logger.info("Streaming " + q);
+
+    Iterator<T> iterator = new CursorIterator(builder, q, pageSize);
+    return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator,
+            Spliterator.ORDERED | Spliterator.NONNULL), false);
+  }
+
+  @Override
+  public long export(QueryBuilder builder, Consumer<? super T> consumer) {
+    preExecute(builder);
+    return exportEngine.export(builder,
+            doc -> consumer.accept(getResultBuilder().createResultFrom(newInstance(doc), doc).getBean()));
+  }
+
+  private static boolean isSortedBy(SolrQuery q, String field) {
+    for (SolrQuery.SortClause c : q.getSorts()) {
+      if (field.equals(c.getItem())) {
+        return true;
+      }
+    }
+    return false;
+  }
+
   private Result<T> evaluateResultFrom(QueryBuilder builder, QueryResponse response) {
     SolrDocumentList results = response.getResults();
     if (results == null) {
@@ -143,6 +400,65 @@ abstract class AbstractSearcher<T> implements Searcher<T> {
 
   protected abstract T newInstance(SolrDocument doc);
 
+  /**
+   * Reads all documents page by page; each page is only requested when the previous one is consumed.
+   */
+  private final class CursorIterator implements Iterator<T> {
+    private final QueryBuilder builder;
+    private final SolrQuery query;
+    private final int pageSize;
+    private String cursorMark = CursorMarkParams.CURSOR_MARK_START;
+    private Iterator<SolrDocument> page = Collections.emptyIterator();
+    private boolean exhausted;
+    private int firstQTime = -1;
+    private long count;
+
+    CursorIterator(QueryBuilder builder, SolrQuery query, int pageSize) {
+      this.builder = builder;
+      this.query = query;
+      this.pageSize = pageSize;
+    }
+
+    @Override
+    public boolean hasNext() {
+      while (!page.hasNext()) {
+        if (exhausted) {
+          return false;
+        }
+        fetchNextPage();
+      }
+      return true;
+    }
+
+    @Override
+    public T next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      SolrDocument doc = page.next();
+      count++;
+      return getResultBuilder().createResultFrom(newInstance(doc), doc).getBean();
+    }
+
+    private void fetchNextPage() {
+      query.set(CursorMarkParams.CURSOR_MARK_PARAM, cursorMark);
+      QueryResponse response = send(builder.getRealm(), query);
+      if (firstQTime < 0) {
+        firstQTime = response.getQTime();
+        builder.getMeasurement().queryReturned();
+      }
+      SolrDocumentList results = response.getResults();
+      String nextCursorMark = response.getNextCursorMark();
+      if (results == null || results.size() < pageSize || nextCursorMark == null || nextCursorMark.equals(cursorMark)) {
+        exhausted = true;
+        logger.info("Streamed " + builder + " with " + (count + (results == null ? 0 : results.size()))
+                + " hits; " + builder.getMeasurement().measureAll(firstQTime));
+      }
+      cursorMark = nextCursorMark;
+      page = results == null ? Collections.<SolrDocument>emptyIterator() : results.iterator();
+    }
+  }
+
   protected QueryResponse sendQueryToSolr(SolrClient solrClient, SolrQuery q) throws SolrServerException, IOException {
     return solrClient.query(q);
   }
@@ -153,31 +469,108 @@ abstract class AbstractSearcher<T> implements Searcher<T> {
     if (n == 0) {
       return Collections.emptyList();
     }
-    if (n <= MAX_ID_QUERY) {
-      return searchByIDsLimited(realm, filterField, ids);
+    IdBatchSizer sizer = batchSizers.computeIfAbsent(realm, r -> new IdBatchSizer(MAX_ID_QUERY));
+    List<Long[]> batches = sizer.split(ids);
+    int batchCount = batches.size();
+    if (batchCount == 1) {
+      return searchByIDsLimited(realm, filterField, sizer, ids);
+    }
+    int parallel = Math.min(realm.getParallelIdQueries(), batchCount);
+    if (parallel > 1) {
+      return searchByIDsInParallel(realm, filterField, sizer, batches, parallel);
+    }
+
+    List<T> result = new ArrayList<>(n);
+    for (Long[] batch : batches) {
+      result.addAll(searchByIDsLimited(realm, filterField, sizer, batch));
+    }
+    return result;
+  }
+
+  /**
+   * Sends the batches concurrently, with at most the given number of them in flight.
+   * The calling thread takes part in the work, so that this never waits for an exhausted executor.
+   */
+  private List<T> searchByIDsInParallel(Realm realm, String filterField, IdBatchSizer sizer,
+                                        List<Long[]> batches, int parallel) {
+    int batchCount = batches.size();
+    // Each worker sets other indexes; the latch makes them visible to this thread
+    List<List<T>> results = new ArrayList<>(Collections.nCopies(batchCount, null));
+    AtomicInteger nextBatch = new AtomicInteger();
+    CountDownLatch finished = new CountDownLatch(batchCount);
+    AtomicReference<RuntimeException> failure = new AtomicReference<>();
+    Runnable worker = () -> {
+      int i;
+      while ((i = nextBatch.getAndIncrement()) < batchCount) {
+        try {
+          if (failure.get() == null) {
+            results.set(i, searchByIDsLimited(realm, filterField, sizer, batches.get(i)));
+          }
+        } catch (RuntimeException ex) {
+          failure.compareAndSet(null, ex);
+        } finally {
+          finished.countDown();
+        }
+      }
+    };
+
+    Executor executor = realm.getExecutor();
+    for (int i = 1; i < parallel; i++) {
+      executor.execute(worker);
+    }
+    worker.run();
+    try {
+      finished.await();
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException("Interrupted while searching for ids", ex);
+    }
+    RuntimeException ex = failure.get();
+    if (ex != null) {
+      throw ex;
+    }
+
+    int n = 0;
+    for (List<T> r : results) {
+      n += r.size();
     }
-    int offset = 0;
     List<T> result = new ArrayList<>(n);
-    do {
-      int subLength = Math.min(MAX_ID_QUERY, n - offset);
-      Long[] subArray = new Long[subLength];
-      System.arraycopy(ids, offset, subArray, 0, subLength);
-      List<T> subResult = searchByIDsLimited(realm, filterField, subArray);
-      result.addAll(subResult);
-    } while ((offset += MAX_ID_QUERY) < n);
+    for (List<T> r : results) {
+      result.addAll(r);
+    }
+    return result;
+  }
 
+  private List<T> searchByIDsLimited(Realm realm, String filterField, IdBatchSizer sizer, Long... ids) {
+    long start = System.nanoTime();
+    List<T> result = searchByIDsLimited(realm, filterField, ids);
+    sizer.record(ids.length, System.nanoTime() - start);
     return result;
   }
 
+  @Override
+  public CompletableFuture<List<T>> searchByIDsAsync(Realm realm, String filterField, Long... ids) {
+    return CompletableFuture.supplyAsync(() -> searchByIDs(realm, filterField, ids), realm.getExecutor());
+  }
+
   private List<T> searchByIDsLimited(Realm realm, String filterField, Long... ids) {
+    FilterType<?> filterType = typeConfiguration.getFilter(filterField);
+    if (filterType == null) {
+      throw new AssertionError("No filter for id defined!");
+    }
     QueryBuilder builder = createNewQueryBuilder(realm);
-    try {
-      Filter f = builder.getFilter(filterField, (Object[]) ids).uncached();
+    String solrFieldName = filterType.getSolrFieldName();
+    if (solrFieldName.equals(realm.getUniqueKeyField())) {
+      builder.lookupByKeys((Object[]) ids);
+    } else {
+      TermsMethod method = TermsMethod.choose(Long.class, realm.getLoadedSchema().hasDocValues(solrFieldName), ids.length);
+      Filter f = new TermsFilter(solrFieldName, filterType.getTagName(), Cardinality.MANY, method, (Object[]) ids)
+              .uncached();
       builder.apply(f);
-    } catch (NoSuchFieldException ex) {
-      throw new AssertionError("No filter for id defined!");
+      builder.setDoHighlight(false);
+      builder.setSortingByIndexOrder();
+      builder.setLimit(ids.length);
     }
-    builder.setLimit(Integer.MAX_VALUE);
     Result<T> result = search(builder);
     return result.getItems();
   }
@@ -225,6 +618,11 @@ abstract class AbstractSearcher<T> implements Searcher<T> {
     return ret;
   }
 
+  @Override
+  public CompletableFuture<List<String>> getSuggestionsAsync(Realm realm, String input) {
+    return CompletableFuture.supplyAsync(() -> getSuggestions(realm, input), realm.getExecutor());
+  }
+
   @Override
   public String toString() {
     return getClass().getSimpleName() + " for " + typeConfiguration.type().getName();
@@ -0,0 +1,61 @@
+package org.fiolino.searcher.searcher;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.apache.solr.client.solrj.response.QueryResponse;
+import org.fiolino.searcher.Realm;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A bounded response cache with Caffeine's W-TinyLFU admission: a burst of one-off queries doesn't push out
+ * the frequently repeated ones.
+ */
+public final class CaffeineResponseCache implements ResponseCache {
+
+  private final Cache<QueryKey, QueryResponse> cache;
+
+  /**
+   * @param maximumSize Maximum number of cached responses
+   * @param timeToLive  Responses are dropped that long after they were fetched
+   */
+  public CaffeineResponseCache(long maximumSize, long timeToLive, TimeUnit unit) {
+    cache = Caffeine.newBuilder().maximumSize(maximumSize).expireAfterWrite(timeToLive, unit)
+            .recordStats().build();
+  }
+
+  @Override
+  public QueryResponse getIfPresent(QueryKey key) {
+    return cache.getIfPresent(key);
+  }
+
+  @Override
+  public void put(QueryKey key, QueryResponse response) {
+    cache.put(key, response);
+  }
+
+  @Override
+  public void invalidate(Realm realm) {
+    cache.asMap().keySet().removeIf(k -> k.getRealm() == realm);
+  }
+
+  @Override
+  public long getHitCount() {
+    return cache.stats().hitCount();
+  }
+
+  @Override
+  public long getMissCount() {
+    return cache.stats().missCount();
+  }
+
+  @Override
+  public long getEvictionCount() {
+    return cache.stats().evictionCount();
+  }
+
+  @Override
+  public String toString() {
+    return "Response cache with " + cache.estimatedSize() + " entries: " + cache.stats();
+  }
+}
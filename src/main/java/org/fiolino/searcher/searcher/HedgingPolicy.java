@@ -0,0 +1,168 @@
+package org.fiolino.searcher.searcher;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Decides when a slow query is sent to a second replica as well, and how often that may happen.
+ * <p>
+ * The delay is either fixed or follows a percentile of the latencies observed so far. The budget caps the hedged
+ * requests to a percentage of all requests: each request adds a fraction of a token, and each hedge takes a whole one.
+ */
+public final class HedgingPolicy {
+
+  private static final int SAMPLES = 1024;
+
+  /**
+   * The percentile delay is recalculated after that many new samples.
+   */
+  private static final int RECALCULATE_EVERY = 64;
+
+  /**
+   * Up to that many hedges can be saved up while everything is fast.
+   */
+  private static final double MAX_TOKENS = 10;
+
+  private final double percentile;
+  private final double tokensPerRequest;
+
+  private final long[] samples = new long[SAMPLES];
+  private final AtomicLong sampleCount = new AtomicLong();
+  private volatile long delayNanos;
+
+  private double tokens;
+
+  private final AtomicLong requests = new AtomicLong();
+  private final AtomicLong hedges = new AtomicLong();
+  private final AtomicLong hedgeWins = new AtomicLong();
+
+  private HedgingPolicy(double percentile, long delayNanos, double budgetPercent) {
+    if (budgetPercent <= 0 || budgetPercent > 100) {
+      throw new IllegalArgumentException("Budget must be between 0 and 100 percent, was " + budgetPercent);
+    }
+    this.percentile = percentile;
+    this.delayNanos = delayNanos;
+    tokensPerRequest = budgetPercent / 100;
+    tokens = 1;
+  }
+
+  /**
+   * Hedges every query which did not return after the given delay.
+   *
+   * @param budgetPercent At most that many percent of all queries are hedged
+   */
+  public static HedgingPolicy afterDelay(long delay, TimeUnit unit, double budgetPercent) {
+    return new HedgingPolicy(-1, unit.toNanos(delay), budgetPercent);
+  }
+
+  /**
+   * Hedges every query which takes longer than the given percentile of the recently observed latencies.
+   *
+   * @param percentile    Like 0.95 for the p95
+   * @param initialDelay  Used until enough latencies were observed
+   * @param budgetPercent At most that many percent of all queries are hedged
+   */
+  public static HedgingPolicy afterPercentile(double percentile, long initialDelay, TimeUnit unit,
+                                              double budgetPercent) {
+    if (percentile <= 0 || percentile >= 1) {
+      throw new IllegalArgumentException("Percentile must be between 0 and 1, was " + percentile);
+    }
+    return new HedgingPolicy(percentile, unit.toNanos(initialDelay), budgetPercent);
+  }
+
+  long getDelayNanos() {
+    return delayNanos;
+  }
+
+  /**
+   * Called for every query; refills the budget.
+   */
+  synchronized void requestStarted() {
+    requests.incrementAndGet();
+    tokens = Math.min(MAX_TOKENS, tokens + tokensPerRequest);
+  }
+
+  /**
+   * Whether the budget allows another hedge right now; doesn't take it.
+   */
+  synchronized boolean canHedge() {
+    return tokens >= 1;
+  }
+
+  /**
+   * Takes one hedge from the budget.
+   *
+   * @return false if the budget is exhausted
+   */
+  synchronized boolean tryHedge() {
+    if (tokens < 1) {
+      return false;
+    }
+    tokens--;
+    hedges.incrementAndGet();
+    return true;
+  }
+
+  /**
+   * Gives back a hedge that couldn't be sent.
+   */
+  synchronized void hedgeRejected() {
+    tokens++;
+    hedges.decrementAndGet();
+  }
+
+  void hedgeWon() {
+    hedgeWins.incrementAndGet();
+  }
+
+  /**
+   * Records the latency of a successful query.
+   */
+  void record(long nanos) {
+    if (percentile < 0) {
+      return;
+    }
+    long n = sampleCount.getAndIncrement();
+    samples[(int) (n % SAMPLES)] = nanos;
+    if (n >= RECALCULATE_EVERY && n % RECALCULATE_EVERY == 0) {
+      long[] copy = Arrays.copyOf(samples, (int) Math.min(n, SAMPLES));
+      Arrays.sort(copy);
+      delayNanos = copy[(int) (percentile * (copy.length - 1))];
+    }
+  }
+
+  public long getRequestCount() {
+    return requests.get();
+  }
+
+  public long getHedgeCount() {
+    return hedges.get();
+  }
+
+  public long getHedgeWinCount() {
+    return hedgeWins.get();
+  }
+
+  /**
+   * Gets the share of all queries that were hedged.
+   */
+  public double getHedgeRate() {
+    long r = requests.get();
+    return r == 0 ? 0 : (double) hedges.get() / r;
+  }
+
+  /**
+   * Gets the share of hedged queries where the second replica answered first.
+   */
+  public double getWinRate() {
+    long h = hedges.get();
+    return h == 0 ? 0 : (double) hedgeWins.get() / h;
+  }
+
+  @Override
+  public String toString() {
+    return "Hedging after " + TimeUnit.NANOSECONDS.toMillis(delayNanos) + "ms: " + hedges + " of " + requests
+            + " requests hedged, " + hedgeWins + " won";
+  }
+}
@@ -0,0 +1,167 @@
+package org.fiolino.searcher.searcher;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Splits large ID lists into batches whose size follows the observed latency of earlier batches,
+ * and which never exceed a safe URL length.
+ * <p>
+ * The latency of a batch is modelled as a fixed overhead per request plus some time per id, fitted to the
+ * recent batches. When the overhead alone exceeds the target, batches get as large as allowed,
+ * since smaller ones would only pay the overhead more often.
+ */
+final class IdBatchSizer {
+
+  private static final int MIN_BATCH_SIZE = 10;
+
+  private static final int MAX_BATCH_SIZE = 1000;
+
+  /**
+   * How many characters the IDs may take in the request URL; leaves room for the other parameters.
+   */
+  private static final int MAX_ID_CHARACTERS = 4096;
+
+  /**
+   * The desired duration of a single batch.
+   */
+  private static final double TARGET_MILLIS = 250.0;
+
+  /**
+   * Weight of the most recent observation in the moving average.
+   */
+  private static final double ALPHA = 0.2;
+
+  /**
+   * Below this variance of the recent batch sizes, overhead and time per id can't be told apart.
+   */
+  private static final double MIN_SIZE_VARIANCE = 1.0;
+
+  /**
+   * Without a fit, the size changes at most by this factor, which also gives the next fit different sizes.
+   */
+  private static final double MAX_PROBE_FACTOR = 2.0;
+
+  /**
+   * Exponentially weighted moments of the batch sizes and durations, for the linear fit.
+   */
+  private static final class Moments {
+    final double size, millis, sizeSquared, sizeTimesMillis;
+
+    Moments(double size, double millis, double sizeSquared, double sizeTimesMillis) {
+      this.size = size;
+      this.millis = millis;
+      this.sizeSquared = sizeSquared;
+      this.sizeTimesMillis = sizeTimesMillis;
+    }
+
+    Moments add(double n, double t) {
+      return new Moments(size + ALPHA * (n - size), millis + ALPHA * (t - millis),
+              sizeSquared + ALPHA * (n * n - sizeSquared), sizeTimesMillis + ALPHA * (n * t - sizeTimesMillis));
+    }
+
+    double sizeVariance() {
+      return sizeSquared - size * size;
+    }
+
+    double millisPerId() {
+      return (sizeTimesMillis - size * millis) / sizeVariance();
+    }
+
+    double overheadMillis() {
+      return Math.max(0.0, millis - millisPerId() * size);
+    }
+  }
+
+  private final int initialBatchSize;
+
+  private final AtomicReference<Moments> moments = new AtomicReference<>();
+
+  IdBatchSizer(int initialBatchSize) {
+    this.initialBatchSize = initialBatchSize;
+  }
+
+  /**
+   * Splits the ids into batches, keeping their order.
+   */
+  List<Long[]> split(Long[] ids) {
+    int n = ids.length;
+    int batchSize = currentBatchSize();
+    if (n <= batchSize && fitsIntoUrl(ids, 0, n)) {
+      return Collections.singletonList(ids);
+    }
+    List<Long[]> batches = new ArrayList<>(n / batchSize + 1);
+    int offset = 0;
+    while (offset < n) {
+      int end = offset + Math.min(batchSize, n - offset);
+      end = limitByUrlLength(ids, offset, end);
+      batches.add(Arrays.copyOfRange(ids, offset, end));
+      offset = end;
+    }
+    return batches;
+  }
+
+  /**
+   * Records the duration of a finished batch.
+   */
+  void record(int batchSize, long nanos) {
+    double millis = (double) TimeUnit.NANOSECONDS.toMicros(nanos) / 1000.0;
+    moments.updateAndGet(m -> m == null
+            ? new Moments(batchSize, millis, (double) batchSize * batchSize, batchSize * millis)
+            : m.add(batchSize, millis));
+  }
+
+  int currentBatchSize() {
+    Moments m = moments.get();
+    if (m == null) {
+      return initialBatchSize;
+    }
+    double size;
+    if (m.sizeVariance() < MIN_SIZE_VARIANCE) {
+      // All recent batches had the same size, so scale it towards the target
+      double factor = m.millis <= 0.0 ? MAX_PROBE_FACTOR : TARGET_MILLIS / m.millis;
+      size = m.size * Math.max(1.0 / MAX_PROBE_FACTOR, Math.min(MAX_PROBE_FACTOR, factor));
+    } else {
+      double perId = m.millisPerId();
+      double available = TARGET_MILLIS - m.overheadMillis();
+      if (perId <= 0.0 || available <= 0.0) {
+        return MAX_BATCH_SIZE;
+      }
+      size = available / perId;
+    }
+    return (int) Math.max(MIN_BATCH_SIZE, Math.min(MAX_BATCH_SIZE, size));
+  }
+
+  private static boolean fitsIntoUrl(Long[] ids, int from, int to) {
+    return limitByUrlLength(ids, from, to) == to;
+  }
+
+  private static int limitByUrlLength(Long[] ids, int from, int to) {
+    int length = 0;
+    for (int i = from; i < to; i++) {
+      length += encodedLength(ids[i]);
+      if (length > MAX_ID_CHARACTERS && i > from) {
+        return i;
+      }
+    }
+    return to;
+  }
+
+  private static int encodedLength(Long id) {
+    if (id == null) {
+      return 4;
+    }
+    long value = id;
+    // Negative values are escaped with a backslash, which is encoded as %5C
+    return Long.toString(value).length() + (value < 0 ? 4 : 1);
+  }
+
+  @Override
+  public String toString() {
+    return getClass().getSimpleName() + " with batch size " + currentBatchSize();
+  }
+}
@@ -0,0 +1,85 @@
+package org.fiolino.searcher.searcher;
+
+import org.apache.solr.common.params.CommonParams;
+import org.apache.solr.common.params.SolrParams;
+import org.fiolino.searcher.Realm;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Identifies a query on a realm independently of the order its parameters were added in.
+ * <p>
+ * Parameter names are sorted. Filter queries are sorted too, since their order doesn't change the result;
+ * all other values keep their order.
+ */
+public final class QueryKey {
+
+  private final Realm realm;
+  private final String parameters;
+  private final int hash;
+
+  private QueryKey(Realm realm, String parameters) {
+    this.realm = realm;
+    this.parameters = parameters;
+    hash = 31 * System.identityHashCode(realm) + parameters.hashCode();
+  }
+
+  public static QueryKey of(Realm realm, SolrParams params) {
+    List<String> names = new ArrayList<>();
+    Iterator<String> it = params.getParameterNamesIterator();
+    while (it.hasNext()) {
+      names.add(it.next());
+    }
+    Collections.sort(names);
+
+    StringBuilder sb = new StringBuilder();
+    for (String name : names) {
+      String[] values = params.getParams(name);
+      if (values == null) {
+        continue;
+      }
+      if (CommonParams.FQ.equals(name) && values.length > 1) {
+        values = values.clone();
+        Arrays.sort(values);
+      }
+      for (String v : values) {
+        if (sb.length() > 0) {
+          sb.append('&');
+        }
+        // Lengths instead of escaping keep the key unambiguous
+        sb.append(name).append('=').append(v.length()).append(':').append(v);
+      }
+    }
+    return new QueryKey(realm, sb.toString());
+  }
+
+  public Realm getRealm() {
+    return realm;
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (this == obj) {
+      return true;
+    }
+    if (!(obj instanceof QueryKey)) {
+      return false;
+    }
+    QueryKey other = (QueryKey) obj;
+    return realm == other.realm && hash == other.hash && parameters.equals(other.parameters);
+  }
+
+  @Override
+  public int hashCode() {
+    return hash;
+  }
+
+  @Override
+  public String toString() {
+    return realm + "?" + parameters;
+  }
+}
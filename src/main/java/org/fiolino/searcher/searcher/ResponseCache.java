@@ -0,0 +1,30 @@
+package org.fiolino.searcher.searcher;
+
+import org.apache.solr.client.solrj.response.QueryResponse;
+import org.fiolino.searcher.Realm;
+
+import javax.annotation.Nullable;
+
+/**
+ * Keeps Solr responses of recent queries, so that identical queries don't go to Solr again.
+ * <p>
+ * Cached responses are shared between callers and must not be modified.
+ */
+public interface ResponseCache {
+
+  @Nullable
+  QueryResponse getIfPresent(QueryKey key);
+
+  void put(QueryKey key, QueryResponse response);
+
+  /**
+   * Drops all responses from the given realm, e.g. after its index was changed.
+   */
+  void invalidate(Realm realm);
+
+  long getHitCount();
+
+  long getMissCount();
+
+  long getEvictionCount();
+}
@@ -1,6 +1,10 @@
 package org.fiolino.searcher.searcher;
 
+import javax.annotation.Nullable;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 import org.fiolino.searcher.Realm;
 import org.fiolino.searcher.QueryBuilder;
@@ -31,6 +35,61 @@ public interface Searcher<T> {
    */
   Result<T> search(QueryBuilder builder);
 
+  /**
+   * Does the search asynchronously, using the executor of the builder's realm.
+   *
+   * @param builder Contains all search specs
+   * @return The future result
+   * @throws IllegalStateException If the builder was already submitted
+   */
+  CompletableFuture<Result<T>> searchAsync(QueryBuilder builder);
+
+  /**
+   * Streams all matching beans, fetching them page by page with a Solr cursor.
+   *
+   * The builder's limit is used as the page size; offset, facets and highlighting are ignored.
+   * Pages are only requested when the stream is consumed, so arbitrarily large results can be read.
+   *
+   * @param builder Contains all search specs
+   * @return A lazy stream of all hits
+   */
+  Stream<T> stream(QueryBuilder builder);
+
+  /**
+   * Exports all matching beans using Solr's export handler.
+   *
+   * Only fields with doc values are filled. Each bean is passed to the consumer before the next one is read,
+   * so the consumer's speed limits the throughput.
+   *
+   * @param builder Contains the query and the filters
+   * @param consumer Gets every bean in the calling thread
+   * @return The number of exported beans
+   */
+  long export(QueryBuilder builder, Consumer<? super T> consumer);
+
+  /**
+   * Sends queries which are slower than the policy allows to a second replica as well.
+   *
+   * @param hedgingPolicy The policy, or null to never hedge
+   */
+  void setHedgingPolicy(@Nullable HedgingPolicy hedgingPolicy);
+
+  /**
+   * Gets the current hedging policy with its statistics.
+   */
+  @Nullable
+  HedgingPolicy getHedgingPolicy();
+
+  /**
+   * Answers repeated identical queries from the cache instead of asking Solr again.
+   *
+   * @param responseCache The cache, or null to always ask Solr
+   */
+  void setResponseCache(@Nullable ResponseCache responseCache);
+
+  @Nullable
+  ResponseCache getResponseCache();
+
   /**
    * Gets the facet information for a specific type.
    *
@@ -44,6 +103,11 @@ public interface Searcher<T> {
    */
   List<T> searchByIDs(Realm realm, String filterField, Long... ids);
 
+  /**
+   * Searches for some given ids asynchronously, using the executor of the given realm.
+   */
+  CompletableFuture<List<T>> searchByIDsAsync(Realm realm, String filterField, Long... ids);
+
   /**
    * Gets the suggestion list.
    *
@@ -52,4 +116,13 @@ public interface Searcher<T> {
    * @return
    */
   List<String> getSuggestions(Realm realm, String input);
+
+  /**
+   * Gets the suggestion list asynchronously, using the executor of the given realm.
+   *
+   * @param realm For which realm
+   * @param input the used prefix
+   * @return The future suggestions
+   */
+  CompletableFuture<List<String>> getSuggestionsAsync(Realm realm, String input);
 }
@@ -12,4 +12,9 @@ class AllowsNullFilter extends ChainedFilter {
   protected void applyTo(StringBuilder sb, boolean negated, boolean allowsNull) {
     next.applyTo(sb, negated, !allowsNull);
   }
+
+  @Override
+  Filter wrap(Filter other) {
+    return new AllowsNullFilter(other);
+  }
 }
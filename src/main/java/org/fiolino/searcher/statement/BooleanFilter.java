@@ -2,6 +2,12 @@ package org.fiolino.searcher.statement;
 
 import org.apache.solr.client.solrj.SolrQuery;
 
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
 /**
  * Created by kuli on 29.02.16.
  */
@@ -9,14 +15,124 @@ class BooleanFilter extends Filter {
   private final Filter first, second;
   private final Operator operator;
 
+  /**
+   * The canonical form, once calculated.
+   */
+  private volatile Filter canonical;
+
   BooleanFilter(Filter first, Filter second, Operator operator) {
     this.first = first;
     this.second = second;
     this.operator = operator;
   }
 
+  /**
+   * Flattens nested conditions of the same operator, and sorts and deduplicates the operands by their rendering.
+   * Operands which are conditions themselves keep their order, since the rendering has no parentheses.
+   *
+   * The result is kept, so a filter that is applied again isn't rendered twice.
+   */
+  @Override
+  public Filter canonicalize() {
+    Filter c = canonical;
+    if (c == null) {
+      canonical = c = createCanonical();
+    }
+    return c;
+  }
+
+  private Filter createCanonical() {
+    List<Filter> operands = new ArrayList<>();
+    collectOperands(this, operands);
+    String[] renderings = new String[operands.size()];
+    boolean keepOrder = false;
+    boolean sameOperands = true;
+    boolean sorted = true;
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0, n = operands.size(); i < n; i++) {
+      Filter operand = operands.get(i);
+      Filter c = operand.canonicalize();
+      operands.set(i, c);
+      sb.setLength(0);
+      c.applyTo(sb, false, false);
+      String rendering = sb.toString();
+      keepOrder |= rendering.contains(" AND ") || rendering.contains(" OR ");
+      renderings[i] = rendering;
+      sameOperands &= c == operand;
+      sorted &= i == 0 || renderings[i - 1].compareTo(rendering) < 0;
+    }
+    if (sameOperands && (sorted || keepOrder)) {
+      // Nothing to change, so keep this one
+      return this;
+    }
+    BooleanFilter result;
+    if (keepOrder) {
+      result = combine(operands.iterator());
+    } else {
+      Map<String, Filter> byRendering = new TreeMap<>();
+      for (int i = 0; i < renderings.length; i++) {
+        byRendering.putIfAbsent(renderings[i], operands.get(i));
+      }
+      if (byRendering.size() == 1) {
+        return byRendering.values().iterator().next();
+      }
+      result = combine(byRendering.values().iterator());
+    }
+    result.canonical = result;
+    return result;
+  }
+
+  private void collectOperands(Filter f, List<Filter> operands) {
+    if (f instanceof BooleanFilter && ((BooleanFilter) f).operator == operator) {
+      collectOperands(((BooleanFilter) f).first, operands);
+      collectOperands(((BooleanFilter) f).second, operands);
+    } else {
+      operands.add(f);
+    }
+  }
+
+  /**
+   * Combines at least two operands.
+   */
+  private BooleanFilter combine(Iterator<Filter> operands) {
+    Filter first = operands.next();
+    BooleanFilter result = new BooleanFilter(first, operands.next(), operator);
+    while (operands.hasNext()) {
+      result = new BooleanFilter(result, operands.next(), operator);
+    }
+    return result;
+  }
+
+  @Override
+  public Cardinality getCardinality() {
+    return first.getCardinality() == Cardinality.MANY ? Cardinality.MANY : second.getCardinality();
+  }
+
+  @Override
+  public int getValueCount() {
+    return first.getValueCount() + second.getValueCount();
+  }
+
+  @Override
+  List<Filter> conjuncts() {
+    if (operator == Operator.OR) {
+      return super.conjuncts();
+    }
+    List<Filter> conjuncts = new ArrayList<>(first.conjuncts());
+    conjuncts.addAll(second.conjuncts());
+    return conjuncts;
+  }
+
+  @Override
+  boolean needsOwnClause() {
+    return first.needsOwnClause() || second.needsOwnClause();
+  }
+
   @Override
   protected void applyTo(StringBuilder sb, boolean negated, boolean allowsNull) {
+    if (needsOwnClause()) {
+      throw new IllegalStateException("Condition of " + first + " and " + second + " must be split into separate filter queries");
+    }
     first.applyTo(sb, negated, allowsNull);
     sb.append(' ').append(operator.value(negated)).append(' ');
     second.applyTo(sb, negated, allowsNull);
@@ -0,0 +1,18 @@
+package org.fiolino.searcher.statement;
+
+/**
+ * A hint how many distinct values a filter is used with over all queries.
+ *
+ * This decides whether it's worth caching the filter in Solr's filterCache.
+ */
+public enum Cardinality {
+  /**
+   * Only few distinct values, like categories or states; the same filters repeat in many queries.
+   */
+  FEW,
+
+  /**
+   * Values vary with almost every query, like ids or user specific values; caching them only evicts other filters.
+   */
+  MANY
+}
@@ -2,6 +2,9 @@ package org.fiolino.searcher.statement;
 
 import org.apache.solr.client.solrj.SolrQuery;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * Created by kuli on 10.03.16.
  */
@@ -17,6 +20,56 @@ abstract class ChainedFilter extends Filter {
     next.applyTo(sb, negated, allowsNull);
   }
 
+  /**
+   * Creates the same kind of filter around another one.
+   */
+  abstract Filter wrap(Filter other);
+
+  @Override
+  public Filter canonicalize() {
+    Filter canonical = next.canonicalize();
+    return canonical == next ? this : wrap(canonical);
+  }
+
+  /**
+   * Keeps the local params of the chained filter, like its tag.
+   */
+  @Override
+  protected void applyLocalParamsTo(ParamContainer container) {
+    next.applyLocalParamsTo(container);
+  }
+
+  @Override
+  boolean needsOwnClause() {
+    return next.needsOwnClause();
+  }
+
+  @Override
+  public Cardinality getCardinality() {
+    return next.getCardinality();
+  }
+
+  @Override
+  public int getValueCount() {
+    return next.getValueCount();
+  }
+
+  /**
+   * Distributes over the parts of the chained filter.
+   */
+  @Override
+  List<Filter> conjuncts() {
+    List<Filter> conjuncts = next.conjuncts();
+    if (conjuncts.size() == 1) {
+      return super.conjuncts();
+    }
+    List<Filter> wrapped = new ArrayList<>(conjuncts.size());
+    for (Filter f : conjuncts) {
+      wrapped.add(wrap(f));
+    }
+    return wrapped;
+  }
+
   @Override
   protected void addToQuery(SolrQuery solrQuery, String query) {
     next.addToQuery(solrQuery, query);
@@ -11,11 +11,17 @@ import org.fiolino.common.util.Strings;
 public class DirectFilter extends Filter {
   private final String solrFieldName;
   private final String tagName;
+  private final Cardinality cardinality;
   private final Object[] values;
 
   public DirectFilter(String solrFieldName, String tagName, Object... values) {
+    this(solrFieldName, tagName, Cardinality.FEW, values);
+  }
+
+  public DirectFilter(String solrFieldName, String tagName, Cardinality cardinality, Object... values) {
     this.solrFieldName = solrFieldName;
     this.tagName = tagName;
+    this.cardinality = cardinality;
     this.values = values;
   }
 
@@ -23,6 +29,22 @@ public class DirectFilter extends Filter {
     return tagName;
   }
 
+  @Override
+  public Cardinality getCardinality() {
+    return cardinality;
+  }
+
+  @Override
+  public int getValueCount() {
+    return values.length;
+  }
+
+  @Override
+  public Filter canonicalize() {
+    Object[] canonical = canonicalValues(values);
+    return canonical == null || canonical == values ? this : new DirectFilter(solrFieldName, tagName, cardinality, canonical);
+  }
+
   @Override
   protected void addToQuery(SolrQuery solrQuery, String filter) {
     solrQuery.addFilterQuery(filter);
@@ -41,9 +63,7 @@ public class DirectFilter extends Filter {
         addQueryTo(sb, negated, allowsNull, values[0]);
         break;
       default:
-        Object[] more = new Object[n - 1];
-        System.arraycopy(values, 1, more, 0, n - 1);
-        addQueryTo(sb, negated, allowsNull, values[0], more);
+        addQueryTo(sb, negated, allowsNull, values);
     }
     if (allowsNull) {
       sb.append(')');
@@ -67,18 +87,17 @@ public class DirectFilter extends Filter {
     checkNull(sb, allowsNull);
   }
 
-  private void addQueryTo(StringBuilder sb, boolean negated, boolean allowsNull, Object value, Object... moreValues) {
-    if (moreValues.length == 0) {
-      addQueryTo(sb, negated, allowsNull, value);
-      return;
-    }
+  /**
+   * Renders the first value like a single one, and all further ones as plain values.
+   */
+  private void addQueryTo(StringBuilder sb, boolean negated, boolean allowsNull, Object[] values) {
     if (negated) {
       sb.append('-');
     }
     sb.append(solrFieldName).append(":(");
-    allowsNull = appendValueTo(sb, allowsNull, value);
-    for (Object o : moreValues) {
-      appendSingleValueTo(sb.append(' '), o);
+    allowsNull = appendValueTo(sb, allowsNull, values[0]);
+    for (int i = 1, n = values.length; i < n; i++) {
+      appendSingleValueTo(sb.append(' '), values[i]);
     }
     sb.append(')');
 
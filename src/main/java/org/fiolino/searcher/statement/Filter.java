@@ -1,10 +1,23 @@
 package org.fiolino.searcher.statement;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
 /**
  * Created by kuli on 29.02.16.
  */
 public abstract class Filter extends Statement {
 
+  /**
+   * Filters with more values than this are unlikely to be repeated, so they're not cached.
+   */
+  public static final int MAX_CACHED_VALUES = 64;
+
+  private static final Comparator<Object> VALUE_ORDER = Filter::compareValues;
+
   protected Filter() {
   }
 
@@ -12,15 +25,33 @@ public abstract class Filter extends Statement {
     return new BooleanFilter(this, other, Operator.AND);
   }
 
+  /**
+   * @throws IllegalArgumentException If one of the filters needs a filter query of its own
+   */
   public Filter or(Filter other) {
+    if (needsOwnClause() || other.needsOwnClause()) {
+      throw new IllegalArgumentException("Can't combine " + this + " and " + other + " with OR");
+    }
     return new BooleanFilter(this, other, Operator.OR);
   }
 
+  /**
+   * @throws IllegalArgumentException If this filter needs a filter query of its own
+   */
   public Filter negated() {
+    if (needsOwnClause()) {
+      throw new IllegalArgumentException("Can't negate " + this + " as a whole");
+    }
     return new NegatedFilter(this);
   }
 
+  /**
+   * @throws IllegalArgumentException If this filter needs a filter query of its own
+   */
   public Filter allowsNullValues() {
+    if (needsOwnClause()) {
+      throw new IllegalArgumentException("Can't combine " + this + " with null values");
+    }
     return new AllowsNullFilter(this);
   }
 
@@ -32,6 +63,155 @@ public abstract class Filter extends Statement {
     return new ParameterizedFilter(this, "cache=false cost=" + cost);
   }
 
+  /**
+   * Returns an equivalent filter that renders the same for all equivalent filters,
+   * so that Solr can answer it from its filter cache.
+   *
+   * Values are sorted and deduplicated, and nested conditions of the same operator are flattened and sorted.
+   */
+  public Filter canonicalize() {
+    return this;
+  }
+
+  /**
+   * How many distinct values this filter is used with in general.
+   */
+  public Cardinality getCardinality() {
+    return Cardinality.FEW;
+  }
+
+  /**
+   * The number of values this filter compares to.
+   */
+  public int getValueCount() {
+    return 1;
+  }
+
+  /**
+   * Splits this filter into the parts that must all match, so that each can be sent as its own fq parameter
+   * and is cached independently. Each part keeps its tag.
+   *
+   * Filters with many values or of {@link Cardinality#MANY} are marked as uncached, with the cost of their
+   * value count so that Solr evaluates the cheaper ones first. If no part would be cached, the filter is
+   * kept as a whole, since intersecting several uncached filters costs more than evaluating one.
+   */
+  public List<Filter> split() {
+    List<Filter> conjuncts = conjuncts();
+    List<Filter> result = new ArrayList<>(conjuncts.size());
+    boolean anyCached = false;
+    for (Filter f : conjuncts) {
+      Filter optimized = applyCachePolicy(f);
+      anyCached |= optimized == f;
+      result.add(optimized);
+    }
+    if (anyCached || result.size() == 1) {
+      return result;
+    }
+    return Collections.singletonList(applyCachePolicy(this));
+  }
+
+  private static Filter applyCachePolicy(Filter f) {
+    if (f.hasCachePolicy()) {
+      return f;
+    }
+    int valueCount = f.getValueCount();
+    if (f.getCardinality() == Cardinality.FEW && valueCount <= MAX_CACHED_VALUES) {
+      return f;
+    }
+    return f.withCost(Math.min(valueCount, 99));
+  }
+
+  /**
+   * Whether this filter already defines its caching and cost itself.
+   */
+  boolean hasCachePolicy() {
+    return false;
+  }
+
+  /**
+   * Whether this filter must be sent as a filter query on its own, e.g. because it uses its own query parser.
+   * Such filters can't be combined with OR, and conditions containing them must be split before being applied.
+   */
+  boolean needsOwnClause() {
+    return false;
+  }
+
+  /**
+   * Returns all parts of this filter which are combined with AND.
+   */
+  List<Filter> conjuncts() {
+    return Collections.singletonList(this);
+  }
+
+  /**
+   * Sorts and deduplicates filter values; collections are expanded into single values.
+   *
+   * @return The same array if it already was canonical, or null if it contains nulls, which have a meaning of their own
+   */
+  static Object[] canonicalValues(Object[] values) {
+    if (isStrictlyOrdered(values)) {
+      return values;
+    }
+    List<Object> flat = new ArrayList<>(values.length);
+    for (Object v : values) {
+      if (v instanceof Iterable) {
+        for (Object each : (Iterable<?>) v) {
+          if (each == null) {
+            return null;
+          }
+          flat.add(each);
+        }
+      } else if (v == null) {
+        return null;
+      } else {
+        flat.add(v);
+      }
+    }
+    flat.sort(VALUE_ORDER);
+    int n = 0;
+    for (Object v : flat) {
+      if (n == 0 || compareValues(flat.get(n - 1), v) != 0) {
+        flat.set(n++, v);
+      }
+    }
+    Object[] result = flat.subList(0, n).toArray();
+    return Arrays.equals(result, values) ? values : result;
+  }
+
+  /**
+   * Whether the values are already sorted without duplicates, which is the common case for single values.
+   */
+  private static boolean isStrictlyOrdered(Object[] values) {
+    Object previous = null;
+    for (Object v : values) {
+      if (v == null || v instanceof Iterable) {
+        return false;
+      }
+      if (previous != null && compareValues(previous, v) >= 0) {
+        return false;
+      }
+      previous = v;
+    }
+    return true;
+  }
+
+  /**
+   * Orders values of the same class by their natural order if they have one, and by their string value otherwise.
+   * Values of different classes are ordered by class name.
+   */
+  private static int compareValues(Object v1, Object v2) {
+    Class<?> type = v1.getClass();
+    if (type != v2.getClass()) {
+      return type.getName().compareTo(v2.getClass().getName());
+    }
+    if (v1 instanceof Comparable) {
+      @SuppressWarnings("unchecked")
+      Comparable<Object> comparable = (Comparable<Object>) v1;
+      return comparable.compareTo(v2);
+    }
+    return String.valueOf(v1).compareTo(String.valueOf(v2));
+  }
+
   @Override
   protected final void applyTo(StringBuilder sb) {
     applyTo(sb, false, false);
@@ -1,5 +1,8 @@
 package org.fiolino.searcher.statement;
 
+import java.util.Collections;
+import java.util.List;
+
 /**
  * Created by kuli on 10.03.16.
  */
@@ -12,4 +15,14 @@ class NegatedFilter extends ChainedFilter {
   protected void applyTo(StringBuilder sb, boolean negated, boolean allowsNull) {
     next.applyTo(sb, !negated, allowsNull);
   }
+
+  @Override
+  List<Filter> conjuncts() {
+    return Collections.singletonList(this);
+  }
+
+  @Override
+  Filter wrap(Filter other) {
+    return new NegatedFilter(other);
+  }
 }
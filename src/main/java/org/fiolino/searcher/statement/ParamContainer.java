@@ -4,10 +4,11 @@ package org.fiolino.searcher.statement;
  * Created by kuli on 28.04.16.
  */
 public final class ParamContainer {
-  private final StringBuilder sb = new StringBuilder();
+  private final StringBuilder sb;
   private boolean isEmpty = true;
 
-  ParamContainer() {
+  ParamContainer(StringBuilder sb) {
+    this.sb = sb;
   }
 
   public StringBuilder add(String parameter) {
@@ -20,10 +21,9 @@ public final class ParamContainer {
     return sb.append(parameter);
   }
 
-  StringBuilder get() {
+  void close() {
     if (!isEmpty) {
       sb.append('}');
     }
-    return sb;
   }
 }
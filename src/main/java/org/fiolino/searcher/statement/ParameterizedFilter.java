@@ -1,5 +1,8 @@
 package org.fiolino.searcher.statement;
 
+import java.util.Collections;
+import java.util.List;
+
 /**
  * Created by kuli on 28.04.16.
  */
@@ -16,4 +19,19 @@ class ParameterizedFilter extends ChainedFilter {
     super.applyLocalParamsTo(container);
     container.add(localParam);
   }
+
+  @Override
+  boolean hasCachePolicy() {
+    return true;
+  }
+
+  @Override
+  List<Filter> conjuncts() {
+    return Collections.singletonList(this);
+  }
+
+  @Override
+  Filter wrap(Filter other) {
+    return new ParameterizedFilter(other, localParam);
+  }
 }
@@ -0,0 +1,160 @@
+package org.fiolino.searcher.statement;
+
+import org.apache.solr.client.solrj.SolrQuery;
+import org.roaringbitmap.longlong.Roaring64NavigableMap;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Base64;
+
+/**
+ * A filter on a large number of numeric ids, sent as a compressed Roaring bitmap.
+ *
+ * This needs the roaring query parser from the solr-plugin module in the Solr core, and the field must be
+ * a single valued numeric field with docValues. Solr runs it as a post filter, probing each candidate's
+ * docValue in the bitmap.
+ *
+ * Because the parser is part of the local params, this filter can only be applied on its own, or as part of
+ * an AND condition, which gets split into separate filter queries; it can't be an operand of an OR condition,
+ * allow null values, or be part of a negated condition. Use {@link #negated()} on this filter for excluding ids.
+ */
+public class RoaringIdFilter extends Filter {
+  /**
+   * The name the query parser must be registered with in solrconfig.xml.
+   */
+  public static final String PARSER_NAME = "roaring";
+
+  /**
+   * Post filters run after all other filters and need at least this cost.
+   */
+  public static final int POST_FILTER_COST = 200;
+
+  private final String solrFieldName;
+  private final String tagName;
+  private final long cardinality;
+  /**
+   * The bitmap is serialized once, since it's not thread safe and may be rendered several times.
+   */
+  private final String encoded;
+  private final boolean negate;
+  private final int cost;
+
+  public RoaringIdFilter(String solrFieldName, String tagName, long... ids) {
+    this(solrFieldName, tagName, Roaring64NavigableMap.bitmapOf(ids));
+  }
+
+  public RoaringIdFilter(String solrFieldName, String tagName, Iterable<? extends Number> ids) {
+    this(solrFieldName, tagName, toBitmap(ids));
+  }
+
+  private RoaringIdFilter(String solrFieldName, String tagName, Roaring64NavigableMap ids) {
+    this(solrFieldName, tagName, ids.getLongCardinality(), encode(ids), false, POST_FILTER_COST);
+  }
+
+  private RoaringIdFilter(String solrFieldName, String tagName, long cardinality, String encoded,
+                          boolean negate, int cost) {
+    this.solrFieldName = solrFieldName;
+    this.tagName = tagName;
+    this.cardinality = cardinality;
+    this.encoded = encoded;
+    this.negate = negate;
+    this.cost = cost;
+  }
+
+  private static Roaring64NavigableMap toBitmap(Iterable<? extends Number> ids) {
+    Roaring64NavigableMap bitmap = new Roaring64NavigableMap();
+    for (Number id : ids) {
+      bitmap.addLong(id.longValue());
+    }
+    return bitmap;
+  }
+
+  private static String encode(Roaring64NavigableMap ids) {
+    ids.runOptimize();
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream((int) ids.serializedSizeInBytes());
+    try (DataOutputStream out = new DataOutputStream(bytes)) {
+      ids.serialize(out);
+    } catch (IOException ex) {
+      throw new AssertionError("Writing into memory failed", ex);
+    }
+    return Base64.getEncoder().encodeToString(bytes.toByteArray());
+  }
+
+  public String getTagName() {
+    return tagName;
+  }
+
+  @Override
+  public Filter negated() {
+    return new RoaringIdFilter(solrFieldName, tagName, cardinality, encoded, !negate, cost);
+  }
+
+  /**
+   * This is never cached anyway.
+   */
+  @Override
+  public Filter uncached() {
+    return this;
+  }
+
+  /**
+   * Replaces the cost; below {@link #POST_FILTER_COST}, Solr runs this as a normal filter.
+   */
+  @Override
+  public Filter withCost(int cost) {
+    return new RoaringIdFilter(solrFieldName, tagName, cardinality, encoded, negate, cost);
+  }
+
+  @Override
+  boolean needsOwnClause() {
+    return true;
+  }
+
+  @Override
+  public Cardinality getCardinality() {
+    return Cardinality.MANY;
+  }
+
+  @Override
+  public int getValueCount() {
+    return (int) Math.min(cardinality, Integer.MAX_VALUE);
+  }
+
+  @Override
+  boolean hasCachePolicy() {
+    return true;
+  }
+
+  @Override
+  protected void addToQuery(SolrQuery solrQuery, String filter) {
+    solrQuery.addFilterQuery(filter);
+  }
+
+  @Override
+  protected void applyLocalParamsTo(ParamContainer container) {
+    container.add(PARSER_NAME);
+    container.add("f=").append(solrFieldName);
+    if (negate) {
+      container.add("negate=true");
+    }
+    if (tagName != null) {
+      container.add("tag=").append(tagName);
+    }
+    container.add("cache=false cost=").append(cost);
+  }
+
+  /**
+   * Negation is part of the local params; {@link #needsOwnClause()} keeps this out of negated and nullable wrappers.
+   */
+  @Override
+  protected void applyTo(StringBuilder sb, boolean negated, boolean allowsNull) {
+    sb.append(encoded);
+  }
+
+  @Override
+  public String toString() {
+    return getClass().getSimpleName() + (negate ? " excluding " : " on ") + solrFieldName + " with "
+            + cardinality + " ids";
+  }
+}
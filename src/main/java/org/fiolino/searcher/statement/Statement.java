@@ -7,21 +7,26 @@ import org.apache.solr.client.solrj.SolrQuery;
  */
 public abstract class Statement {
   public final void apply(SolrQuery solrQuery) {
-    StringBuilder sb = createStringBuilder();
-    applyTo(sb);
-    addToQuery(solrQuery, sb.toString());
+    apply(solrQuery, new StringBuilder());
+  }
+
+  /**
+   * Applies this statement, rendering it into the given buffer.
+   * The buffer is cleared first, so one buffer can be reused for all statements of a query.
+   */
+  public final void apply(SolrQuery solrQuery, StringBuilder buffer) {
+    buffer.setLength(0);
+    ParamContainer container = new ParamContainer(buffer);
+    applyLocalParamsTo(container);
+    container.close();
+    applyTo(buffer);
+    addToQuery(solrQuery, buffer.toString());
   }
 
   protected abstract void addToQuery(SolrQuery solrQuery, String query);
 
   protected abstract void applyTo(StringBuilder sb);
 
-  private StringBuilder createStringBuilder() {
-    ParamContainer container = new ParamContainer();
-    applyLocalParamsTo(container);
-    return container.get();
-  }
-
   protected void applyLocalParamsTo(ParamContainer container) {
     // Default: No params
   }
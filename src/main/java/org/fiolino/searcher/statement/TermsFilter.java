@@ -0,0 +1,151 @@
+package org.fiolino.searcher.statement;
+
+import org.apache.solr.client.solrj.SolrQuery;
+
+/**
+ * A filter which matches a list of terms using Solr's terms query parser.
+ *
+ * Unlike the {@link DirectFilter}, this doesn't create a boolean query with one clause per value,
+ * so it's suitable for long lists like ids. The values are not scored.
+ */
+public class TermsFilter extends Filter {
+  private static final String[] SEPARATORS = {",", "|", ";", "~"};
+
+  private final String solrFieldName;
+  private final String tagName;
+  private final Cardinality cardinality;
+  private final TermsMethod method;
+  private final Object[] values;
+
+  public TermsFilter(String solrFieldName, String tagName, Object... values) {
+    this(solrFieldName, tagName, Cardinality.FEW, values);
+  }
+
+  public TermsFilter(String solrFieldName, String tagName, Cardinality cardinality, Object... values) {
+    this(solrFieldName, tagName, cardinality, null, values);
+  }
+
+  /**
+   * @param method How Solr matches the terms; null for its default
+   */
+  public TermsFilter(String solrFieldName, String tagName, Cardinality cardinality, TermsMethod method,
+                     Object... values) {
+    this.solrFieldName = solrFieldName;
+    this.tagName = tagName;
+    this.cardinality = cardinality;
+    this.method = method;
+    this.values = values;
+  }
+
+  public String getTagName() {
+    return tagName;
+  }
+
+  @Override
+  public Cardinality getCardinality() {
+    return cardinality;
+  }
+
+  @Override
+  public int getValueCount() {
+    return values.length;
+  }
+
+  @Override
+  public Filter canonicalize() {
+    Object[] canonical = canonicalValues(values);
+    return canonical == null || canonical == values ? this : new TermsFilter(solrFieldName, tagName, cardinality, method, canonical);
+  }
+
+  @Override
+  protected void addToQuery(SolrQuery solrQuery, String filter) {
+    solrQuery.addFilterQuery(filter);
+  }
+
+  @Override
+  protected void applyLocalParamsTo(ParamContainer container) {
+    super.applyLocalParamsTo(container);
+    if (tagName != null) {
+      container.add("tag=").append(tagName);
+    }
+  }
+
+  @Override
+  protected void applyTo(StringBuilder sb, boolean negated, boolean allowsNull) {
+    if (allowsNull) {
+      sb.append('(');
+    }
+    if (negated) {
+      sb.append('-');
+    }
+    String separator = findSeparator(values);
+    if (separator == null) {
+      throw new IllegalArgumentException("Values of " + this + " contain all possible separators.");
+    }
+    sb.append("_query_:\"{!terms f=").append(solrFieldName);
+    if (!separator.equals(",")) {
+      sb.append(" separator='").append(separator).append('\'');
+    }
+    if (method != null) {
+      sb.append(" method=").append(method.getName());
+    }
+    sb.append('}');
+    boolean first = true;
+    for (Object v : values) {
+      if (v == null) {
+        continue;
+      }
+      if (first) {
+        first = false;
+      } else {
+        sb.append(separator);
+      }
+      appendEscaped(sb, v.toString());
+    }
+    if (first) {
+      throw new IllegalArgumentException("No values given for filter " + this);
+    }
+    sb.append('"');
+    if (allowsNull) {
+      sb.append(" OR (*:* NOT ").append(solrFieldName).append(":[* TO *]))");
+    }
+  }
+
+  /**
+   * Finds a separator for the terms query parser that is not part of any value.
+   *
+   * @return null if all candidates occur in the values
+   */
+  public static String findSeparator(Object... values) {
+    for (String s : SEPARATORS) {
+      if (!containsInValues(values, s)) {
+        return s;
+      }
+    }
+    return null;
+  }
+
+  private static boolean containsInValues(Object[] values, String separator) {
+    for (Object v : values) {
+      if (v instanceof String && ((String) v).contains(separator)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static void appendEscaped(StringBuilder sb, String value) {
+    for (int i = 0, n = value.length(); i < n; i++) {
+      char ch = value.charAt(i);
+      if (ch == '"' || ch == '\\') {
+        sb.append('\\');
+      }
+      sb.append(ch);
+    }
+  }
+
+  @Override
+  public String toString() {
+    return getClass().getSimpleName() + " on " + solrFieldName + " with " + values.length + " values";
+  }
+}
@@ -0,0 +1,69 @@
+package org.fiolino.searcher.statement;
+
+/**
+ * The methods of Solr's terms query parser.
+ */
+public enum TermsMethod {
+  /**
+   * Seeks each term in the index; the default.
+   */
+  TERMS_FILTER("termsFilter"),
+
+  /**
+   * Creates a constant score boolean query; fine for small vocabularies.
+   */
+  BOOLEAN_QUERY("booleanQuery"),
+
+  /**
+   * Intersects an automaton of all values with the terms dictionary; faster for large lists of strings.
+   */
+  AUTOMATON("automaton"),
+
+  /**
+   * Scans the docValues instead of the index; faster for very large lists.
+   * The field needs sorted set docValues, which only string fields have; numeric fields would fail.
+   */
+  DOC_VALUES_TERMS_FILTER("docValuesTermsFilter");
+
+  /**
+   * From this number of values on, string fields with docValues are scanned instead of looking up each term.
+   */
+  public static final int DOC_VALUES_MIN_VALUES = 512;
+
+  /**
+   * From this number of string values on, an automaton is used.
+   */
+  public static final int AUTOMATON_MIN_VALUES = 256;
+
+  private final String name;
+
+  TermsMethod(String name) {
+    this.name = name;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * Chooses the method by the field's value type and the number of values.
+   *
+   * @param valueType  The Java type of the values
+   * @param docValues  Whether the field has docValues
+   * @param valueCount How many values to match
+   */
+  public static TermsMethod choose(Class<?> valueType, boolean docValues, int valueCount) {
+    if (valueType == Boolean.class || valueType.isEnum()) {
+      return BOOLEAN_QUERY;
+    }
+    if (CharSequence.class.isAssignableFrom(valueType)) {
+      if (docValues && valueCount >= DOC_VALUES_MIN_VALUES) {
+        return DOC_VALUES_TERMS_FILTER;
+      }
+      if (valueCount >= AUTOMATON_MIN_VALUES) {
+        return AUTOMATON;
+      }
+    }
+    return TERMS_FILTER;
+  }
+}
@@ -0,0 +1,127 @@
+package org.fiolino.searcher;
+
+import org.apache.solr.client.solrj.SolrQuery;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class LayeredSolrQueryTest {
+
+  private Map<String, String[]> template;
+
+  @Before
+  public void setUp() {
+    template = new LinkedHashMap<>();
+    template.put("q", new String[] {"*:*"});
+    template.put("fq", new String[] {"brand:a", "color:red"});
+    template.put("rows", new String[] {"10"});
+  }
+
+  private void assertTemplateUnchanged() {
+    assertEquals(3, template.size());
+    assertArrayEquals(new String[] {"*:*"}, template.get("q"));
+    assertArrayEquals(new String[] {"brand:a", "color:red"}, template.get("fq"));
+    assertArrayEquals(new String[] {"10"}, template.get("rows"));
+  }
+
+  @Test
+  public void testReadsFromTemplate() {
+    SolrQuery q = new LayeredSolrQuery(template);
+    assertEquals("*:*", q.getQuery());
+    assertEquals(Integer.valueOf(10), q.getRows());
+    assertArrayEquals(new String[] {"brand:a", "color:red"}, q.getFilterQueries());
+    assertEquals(3, q.size());
+    assertNull(q.get("start"));
+  }
+
+  @Test
+  public void testReturnedArraysAreCopies() {
+    SolrQuery q = new LayeredSolrQuery(template);
+    q.getFilterQueries()[0] = "brand:b";
+    assertTemplateUnchanged();
+  }
+
+  @Test
+  public void testSetShadowsTemplate() {
+    SolrQuery q = new LayeredSolrQuery(template);
+    q.setRows(20);
+    q.setStart(5);
+    assertEquals(Integer.valueOf(20), q.getRows());
+    assertEquals(Integer.valueOf(5), q.getStart());
+    assertEquals(4, q.size());
+    assertTemplateUnchanged();
+  }
+
+  @Test
+  public void testAddKeepsTemplateValues() {
+    SolrQuery q = new LayeredSolrQuery(template);
+    q.addFilterQuery("size:9");
+    assertArrayEquals(new String[] {"brand:a", "color:red", "size:9"}, q.getFilterQueries());
+    assertTemplateUnchanged();
+  }
+
+  @Test
+  public void testRemove() {
+    SolrQuery q = new LayeredSolrQuery(template);
+    assertArrayEquals(new String[] {"*:*"}, q.remove("q"));
+    assertNull(q.getQuery());
+    assertFalse(q.getParameterNames().contains("q"));
+
+    assertTrue(q.removeFilterQuery("brand:a"));
+    assertArrayEquals(new String[] {"color:red"}, q.getFilterQueries());
+    assertEquals(2, q.size());
+    assertTemplateUnchanged();
+  }
+
+  @Test
+  public void testClear() {
+    SolrQuery q = new LayeredSolrQuery(template);
+    q.clear();
+    assertEquals(0, q.size());
+    assertNull(q.getQuery());
+    assertTemplateUnchanged();
+  }
+
+  @Test
+  public void testGetMap() {
+    SolrQuery q = new LayeredSolrQuery(template);
+    q.setRows(20);
+    q.set("wt", "json");
+    Map<String, String[]> map = q.getMap();
+    assertEquals(Arrays.asList("q", "fq", "rows", "wt"), Arrays.asList(map.keySet().toArray()));
+    assertArrayEquals(new String[] {"brand:a", "color:red"}, map.get("fq"));
+    assertArrayEquals(new String[] {"20"}, map.get("rows"));
+    assertArrayEquals(new String[] {"json"}, map.get("wt"));
+  }
+
+  @Test
+  public void testSameParametersAsPlainQuery() {
+    SolrQuery q = new LayeredSolrQuery(template);
+    q.setRows(20);
+    q.addFilterQuery("size:9");
+    SolrQuery plain = new SolrQuery();
+    plain.setQuery("*:*");
+    plain.addFilterQuery("brand:a", "color:red", "size:9");
+    plain.setRows(20);
+    assertEquals(toMap(plain), toMap(q));
+  }
+
+  private static Map<String, List<String>> toMap(SolrQuery q) {
+    Map<String, List<String>> map = new HashMap<>();
+    for (String name : q.getParameterNames()) {
+      map.put(name, Arrays.asList(q.getParams(name)));
+    }
+    return map;
+  }
+}
@@ -0,0 +1,81 @@
+package org.fiolino.searcher;
+
+import org.apache.solr.client.solrj.SolrClient;
+import org.apache.solr.client.solrj.SolrQuery;
+import org.apache.solr.client.solrj.response.QueryResponse;
+import org.fiolino.searcher.searcher.GenericSearcher;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class MeasurementTest {
+
+  public static class Item {
+  }
+
+  @Test
+  public void testWaitedForExecutor() {
+    Measurement m = new Measurement();
+    m.submitted();
+    m.dispatched();
+    m.queryBuilt();
+    m.queryReturned();
+    String measured = m.measureAll(0);
+    assertTrue(measured, measured.startsWith("Time measurement: waited for executor "));
+  }
+
+  @Test
+  public void testSynchronous() {
+    Measurement m = new Measurement();
+    m.queryBuilt();
+    m.queryReturned();
+    String measured = m.measureAll(0);
+    assertTrue(measured, measured.startsWith("Time measurement: build query "));
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testSubmittedTwice() {
+    Measurement m = new Measurement();
+    m.submitted();
+    m.submitted();
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testDispatchedWithoutSubmit() {
+    new Measurement().dispatched();
+  }
+
+  @Test
+  public void testSearchAsyncTwiceFailsAtCallSite() throws Exception {
+    CountDownLatch gate = new CountDownLatch(1);
+    GenericSearcher<Item> searcher = new GenericSearcher<Item>(Item.class, new FilterDomain("test"), null, Item::new) {
+      @Override
+      protected QueryResponse sendQueryToSolr(SolrClient solrClient, SolrQuery q) {
+        try {
+          gate.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+          Thread.currentThread().interrupt();
+        }
+        return new QueryResponse();
+      }
+    };
+    // Nothing listens there; the searcher doesn't really send anything
+    try (Realm realm = new Realm("http://localhost:1/solr", "test")) {
+      QueryBuilder builder = searcher.createQueryBuilder(realm);
+      builder.setLimit(10);
+      searcher.searchAsync(builder);
+      try {
+        searcher.searchAsync(builder);
+        fail("The builder is already submitted");
+      } catch (IllegalStateException expected) {
+        // expected
+      } finally {
+        gate.countDown();
+      }
+    }
+  }
+}
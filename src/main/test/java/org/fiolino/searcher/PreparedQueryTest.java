@@ -0,0 +1,121 @@
+package org.fiolino.searcher;
+
+import org.apache.solr.client.solrj.SolrQuery;
+import org.fiolino.data.annotation.Hint;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class PreparedQueryTest {
+
+  private Realm realm;
+  private TypeConfiguration<Object> typeConfiguration;
+
+  @Before
+  public void setUp() {
+    // Nothing listens there; the background sampling of facet fields just fails
+    realm = new Realm("http://localhost:1/solr", "test");
+    typeConfiguration = new TypeConfiguration<>(Object.class, new FilterDomain("test"));
+    typeConfiguration.registerStringFacet("category_ids", "category", Hint.LIMITED_SIZE, "category");
+    typeConfiguration.registerFilter("brand_s", "brand", String.class, "brand");
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    realm.close();
+  }
+
+  private PreparedQuery prepareWithPlaceholder() throws NoSuchFieldException {
+    QueryBuilder builder = new QueryBuilder(typeConfiguration, realm);
+    builder.setLimit(10);
+    builder.addFacet("category");
+    builder.applyPlaceholder("category", "cat");
+    return builder.prepare();
+  }
+
+  @Test
+  public void testPlaceholderRendering() throws NoSuchFieldException {
+    PreparedQuery prepared = prepareWithPlaceholder();
+    List<String> fq = Arrays.asList(prepared.getParameters().get("fq"));
+    assertTrue(fq.toString(), fq.contains("{!terms f=category_ids tag=category separator=$cat_sep v=$cat}"));
+
+    QueryBuilder request = prepared.newRequest();
+    request.bind("cat", 17L, null, 18L);
+    SolrQuery q = request.build();
+    String separator = q.get("cat_sep");
+    assertEquals("17" + separator + "18", q.get("cat"));
+    assertFalse(prepared.getParameters().containsKey("cat"));
+  }
+
+  @Test
+  public void testFacetsExcludePlaceholderTags() throws NoSuchFieldException {
+    PreparedQuery prepared = prepareWithPlaceholder();
+    List<String> facetFields = Arrays.asList(prepared.getParameters().get("facet.field"));
+    assertEquals(Arrays.asList("{!ex=category}category_ids"), facetFields);
+  }
+
+  @Test
+  public void testRequestsAreIndependent() throws NoSuchFieldException {
+    PreparedQuery prepared = prepareWithPlaceholder();
+    QueryBuilder first = prepared.newRequest();
+    first.bind("cat", 1L);
+    QueryBuilder second = prepared.newRequest();
+    second.bind("cat", 2L);
+    assertEquals("1", first.build().get("cat"));
+    assertEquals("2", second.build().get("cat"));
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testUnboundPlaceholder() throws NoSuchFieldException {
+    prepareWithPlaceholder().newRequest().build();
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testUnknownPlaceholder() throws NoSuchFieldException {
+    prepareWithPlaceholder().newRequest().bind("brand", "x");
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testBoundBeforePreparing() throws NoSuchFieldException {
+    QueryBuilder builder = new QueryBuilder(typeConfiguration, realm);
+    builder.applyPlaceholder("category", "cat");
+    builder.bind("cat", 1L);
+    builder.prepare();
+  }
+
+  @Test
+  public void testQueryCannotBeSetPerRequest() throws NoSuchFieldException {
+    QueryBuilder request = prepareWithPlaceholder().newRequest();
+    try {
+      request.setQuery("red shoes");
+      fail("The relevance sort of the template doesn't know the query");
+    } catch (IllegalStateException expected) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testFilterCannotBeAppliedPerRequest() throws NoSuchFieldException {
+    QueryBuilder request = prepareWithPlaceholder().newRequest();
+    try {
+      request.applyFilter("brand", "acme");
+      fail("The facets of the template don't exclude the tag of the filter");
+    } catch (IllegalStateException expected) {
+      // expected
+    }
+    try {
+      request.addFacet("category");
+      fail("Facets are part of the template");
+    } catch (IllegalStateException expected) {
+      // expected
+    }
+  }
+}
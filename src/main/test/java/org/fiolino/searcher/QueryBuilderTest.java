@@ -0,0 +1,54 @@
+package org.fiolino.searcher;
+
+import org.apache.solr.client.solrj.SolrQuery;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+
+public class QueryBuilderTest {
+
+  private Realm realm;
+  private TypeConfiguration<Object> typeConfiguration;
+
+  @Before
+  public void setUp() {
+    // Nothing listens there; nothing is sent in these tests
+    realm = new Realm("http://localhost:1/solr", "test");
+    typeConfiguration = new TypeConfiguration<>(Object.class, new FilterDomain("test"));
+    typeConfiguration.registerFilter("brand_s", "brand", String.class, "brand");
+    typeConfiguration.registerFilter("color_s", "color", String.class, "color");
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    realm.close();
+  }
+
+  private QueryBuilder createBuilder() {
+    QueryBuilder builder = new QueryBuilder(typeConfiguration, realm);
+    builder.setLimit(10);
+    return builder;
+  }
+
+  @Test
+  public void testRemovesDuplicateFilterQueries() throws NoSuchFieldException {
+    QueryBuilder builder = createBuilder();
+    builder.applyFilter("brand", "b", "a");
+    builder.applyFilter("color", "red");
+    builder.applyFilter("brand", "a", "b");
+    builder.apply(builder.getFilter("color", "red").and(builder.getFilter("brand", "a", "b")));
+    SolrQuery q = builder.build();
+    assertEquals(Arrays.toString(q.getFilterQueries()), 2, q.getFilterQueries().length);
+  }
+
+  @Test
+  public void testKeepsSingleFilterQuery() throws NoSuchFieldException {
+    QueryBuilder builder = createBuilder();
+    builder.applyFilter("brand", "a");
+    assertEquals(1, builder.build().getFilterQueries().length);
+  }
+}
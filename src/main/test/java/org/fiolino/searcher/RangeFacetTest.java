@@ -0,0 +1,144 @@
+package org.fiolino.searcher;
+
+import org.apache.solr.client.solrj.response.QueryResponse;
+import org.apache.solr.common.util.NamedList;
+import org.fiolino.searcher.fieldhandling.RangeFacetType;
+import org.fiolino.searcher.result.RangeFacetResult;
+import org.fiolino.searcher.result.Result;
+import org.fiolino.searcher.result.ResultBuilder;
+import org.fiolino.searcher.result.SingleFacetItem;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class RangeFacetTest {
+
+  private static final Date YEAR_2020 = Date.from(Instant.parse("2020-01-01T00:00:00Z"));
+  private static final Date YEAR_2021 = Date.from(Instant.parse("2021-01-01T00:00:00Z"));
+
+  private Realm realm;
+  private TypeConfiguration<Object> typeConfiguration;
+  private ResultBuilder<Object> resultBuilder;
+
+  @Before
+  public void setUp() {
+    // Nothing listens there; nothing is sent in these tests
+    realm = new Realm("http://localhost:1/solr", "test");
+    typeConfiguration = new TypeConfiguration<>(Object.class, new FilterDomain("test"));
+    typeConfiguration.registerRangeFacet("created_dt", "created", Date.class,
+            "NOW/YEAR-10YEARS", "NOW", "+1YEAR", "created");
+    typeConfiguration.registerRangeFacet("price_d", "price", Double.class, "0", "100", "10", "price");
+    resultBuilder = new ResultBuilder<>(typeConfiguration, null);
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    realm.close();
+  }
+
+  @Test
+  public void testGet() {
+    assertEquals(YEAR_2020, new RangeFacetType<>("d", "d", Date.class, "0", "1", "1").get("2020-01-01T00:00:00Z"));
+    assertEquals(Integer.valueOf(10), new RangeFacetType<>("i", "i", Integer.class, "0", "1", "1").get("10"));
+    assertEquals(Long.valueOf(-3), new RangeFacetType<>("l", "l", Long.class, "0", "1", "1").get("-3"));
+    assertEquals(Float.valueOf(2.5f), new RangeFacetType<>("f", "f", Float.class, "0", "1", "1").get("2.5"));
+    assertEquals(Double.valueOf(0.0), new RangeFacetType<>("p", "p", Double.class, "0", "1", "1").get("0.0"));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testRejectsOtherTypes() {
+    new RangeFacetType<>("s", "s", String.class, "0", "1", "1");
+  }
+
+  private Result<Object> read(NamedList<Object> response) {
+    QueryResponse queryResponse = new QueryResponse();
+    queryResponse.setResponse(response);
+    QueryBuilder builder = new QueryBuilder(typeConfiguration, realm);
+    builder.setLimit(0);
+    Result<Object> result = new Result<>(0, 0);
+    resultBuilder.addMetaInformation(builder, result, queryResponse);
+    return result;
+  }
+
+  private static NamedList<Object> classicRange(Object start, Object end, Object gap, Object... counts) {
+    NamedList<Object> countList = new NamedList<>();
+    for (int i = 0; i < counts.length; i += 2) {
+      countList.add((String) counts[i], counts[i + 1]);
+    }
+    NamedList<Object> range = new NamedList<>();
+    range.add("counts", countList);
+    range.add("gap", gap);
+    range.add("start", start);
+    range.add("end", end);
+    return range;
+  }
+
+  private static NamedList<Object> bucket(Object value, long count) {
+    NamedList<Object> b = new NamedList<>();
+    b.add("val", value);
+    b.add("count", count);
+    return b;
+  }
+
+  private static NamedList<Object> jsonRange(NamedList<?>... buckets) {
+    NamedList<Object> range = new NamedList<>();
+    range.add("buckets", Arrays.asList(buckets));
+    return range;
+  }
+
+  private static <T> void assertItem(RangeFacetResult<? extends T> facet, int index, T value, int hits) {
+    List<? extends SingleFacetItem<? extends T>> items = facet.getItems();
+    assertEquals(value, items.get(index).getValue());
+    assertEquals(hits, items.get(index).getHitCount());
+  }
+
+  @Test
+  public void testClassicResponse() {
+    NamedList<Object> ranges = new NamedList<>();
+    ranges.add("range_created", classicRange(YEAR_2020, YEAR_2021, "+1YEAR",
+            "2020-01-01T00:00:00Z", 3, "2021-01-01T00:00:00Z", 5));
+    ranges.add("range_price", classicRange(0.0, 100.0, 10.0, "0.0", 7, "10.0", 2));
+    NamedList<Object> facetCounts = new NamedList<>();
+    facetCounts.add("facet_ranges", ranges);
+    NamedList<Object> response = new NamedList<>();
+    response.add("facet_counts", facetCounts);
+
+    Result<Object> result = read(response);
+    RangeFacetResult<? extends Date> created = result.getRangeFacet("created", Date.class);
+    assertEquals(2, created.getItems().size());
+    assertItem(created, 0, YEAR_2020, 3);
+    assertItem(created, 1, YEAR_2021, 5);
+    assertEquals("+1YEAR", created.getGap());
+    RangeFacetResult<? extends Double> price = result.getRangeFacet("price", Double.class);
+    assertItem(price, 0, 0.0, 7);
+    assertItem(price, 1, 10.0, 2);
+    assertNull(result.getRangeFacet("price", Date.class));
+  }
+
+  @Test
+  public void testJsonResponse() {
+    NamedList<Object> facets = new NamedList<>();
+    facets.add("count", 10L);
+    facets.add("range_created", jsonRange(bucket(YEAR_2020, 3), bucket(YEAR_2021, 5)));
+    facets.add("range_price", jsonRange(bucket(0.0, 7), bucket(10.0, 2)));
+    NamedList<Object> response = new NamedList<>();
+    response.add("facets", facets);
+
+    Result<Object> result = read(response);
+    RangeFacetResult<? extends Date> created = result.getRangeFacet("created", Date.class);
+    assertEquals(2, created.getItems().size());
+    assertItem(created, 0, YEAR_2020, 3);
+    assertItem(created, 1, YEAR_2021, 5);
+    RangeFacetResult<? extends Double> price = result.getRangeFacet("price", Double.class);
+    assertItem(price, 0, 0.0, 7);
+    assertItem(price, 1, 10.0, 2);
+  }
+}
@@ -0,0 +1,71 @@
+package org.fiolino.searcher;
+
+import org.apache.solr.client.solrj.SolrQuery;
+import org.apache.solr.client.solrj.embedded.EmbeddedSolrServer;
+import org.apache.solr.common.SolrDocumentList;
+import org.apache.solr.common.SolrInputDocument;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+public class RealTimeGetTest {
+  private static EmbeddedSolrServer server;
+
+  @BeforeClass
+  public static void startSolr() throws Exception {
+    Path solrHome = Paths.get(RealTimeGetTest.class.getResource("/solr").toURI());
+    server = new EmbeddedSolrServer(solrHome, "collection1");
+    List<SolrInputDocument> docs = new ArrayList<>();
+    for (String id : new String[] {"doc1", "doc2", "doc3", "a,b", "back\\slash"}) {
+      SolrInputDocument doc = new SolrInputDocument();
+      doc.addField("id", id);
+      docs.add(doc);
+    }
+    server.add(docs);
+    server.commit();
+  }
+
+  @AfterClass
+  public static void stopSolr() throws Exception {
+    server.close();
+  }
+
+  private static SolrDocumentList get(String... keys) throws Exception {
+    SolrQuery query = QueryBuilder.createRealTimeGet(keys, null, null);
+    return server.query(query).getResults();
+  }
+
+  @Test
+  public void testSingleKey() throws Exception {
+    SolrDocumentList docs = get("doc2");
+    assertNotNull(docs);
+    assertEquals(1, docs.size());
+    assertEquals("doc2", docs.get(0).getFieldValue("id"));
+  }
+
+  @Test
+  public void testMissingSingleKey() throws Exception {
+    SolrDocumentList docs = get("unknown");
+    assertNotNull(docs);
+    assertEquals(0, docs.size());
+  }
+
+  @Test
+  public void testSeveralKeys() throws Exception {
+    assertEquals(3, get("doc1", "doc3", "unknown", "doc2").size());
+  }
+
+  @Test
+  public void testKeysWithSeparators() throws Exception {
+    SolrDocumentList docs = get("a,b", "back\\slash");
+    assertEquals(2, docs.size());
+  }
+}
@@ -0,0 +1,204 @@
+package org.fiolino.searcher;
+
+import org.apache.solr.client.solrj.SolrClient;
+import org.apache.solr.client.solrj.SolrQuery;
+import org.apache.solr.client.solrj.response.QueryResponse;
+import org.fiolino.searcher.searcher.CaffeineResponseCache;
+import org.fiolino.searcher.searcher.GenericSearcher;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ResponseCachingTest {
+
+  public static class Item {
+  }
+
+  /**
+   * Counts the requests instead of sending them; a request waits for the gate if one is set.
+   */
+  private static class CountingSearcher extends GenericSearcher<Item> {
+    final AtomicInteger sent = new AtomicInteger();
+    final CountDownLatch entered = new CountDownLatch(1);
+    volatile CountDownLatch gate;
+    volatile boolean failing;
+
+    CountingSearcher() {
+      super(Item.class, new FilterDomain("test"), null, Item::new);
+    }
+
+    @Override
+    protected QueryResponse sendQueryToSolr(SolrClient solrClient, SolrQuery q) throws IOException {
+      sent.incrementAndGet();
+      entered.countDown();
+      CountDownLatch g = gate;
+      if (g != null) {
+        try {
+          g.await();
+        } catch (InterruptedException ex) {
+          Thread.currentThread().interrupt();
+        }
+      }
+      if (failing) {
+        throw new IOException("Solr is down");
+      }
+      return new QueryResponse();
+    }
+  }
+
+  private Realm realm;
+  private Realm otherRealm;
+  private CountingSearcher searcher;
+  private ExecutorService executor;
+
+  @Before
+  public void setUp() {
+    // Nothing listens there; the searcher doesn't really send anything
+    realm = new Realm("http://localhost:1/solr", "test");
+    otherRealm = new Realm("http://localhost:1/solr", "other");
+    searcher = new CountingSearcher();
+    executor = Executors.newCachedThreadPool();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    executor.shutdownNow();
+    realm.close();
+    otherRealm.close();
+  }
+
+  private QueryBuilder query(Realm r, String text) {
+    QueryBuilder builder = searcher.createQueryBuilder(r);
+    builder.setLimit(10);
+    builder.setQuery(text);
+    return builder;
+  }
+
+  @Test
+  public void testCacheHit() {
+    searcher.setResponseCache(new CaffeineResponseCache(100, 1, TimeUnit.MINUTES));
+    QueryResponse first = searcher.execute(query(realm, "shoes"));
+    assertSame(first, searcher.execute(query(realm, "shoes")));
+    assertEquals(1, searcher.sent.get());
+    assertEquals(1, searcher.getResponseCache().getHitCount());
+
+    searcher.execute(query(realm, "boots"));
+    searcher.execute(query(otherRealm, "shoes"));
+    assertEquals(3, searcher.sent.get());
+  }
+
+  @Test
+  public void testNothingCachedWithoutCache() {
+    assertNotSame(searcher.execute(query(realm, "shoes")), searcher.execute(query(realm, "shoes")));
+    assertEquals(2, searcher.sent.get());
+  }
+
+  @Test
+  public void testInvalidateRealm() {
+    searcher.setResponseCache(new CaffeineResponseCache(100, 1, TimeUnit.MINUTES));
+    searcher.execute(query(realm, "shoes"));
+    QueryResponse other = searcher.execute(query(otherRealm, "shoes"));
+    searcher.getResponseCache().invalidate(realm);
+
+    searcher.execute(query(realm, "shoes"));
+    assertSame(other, searcher.execute(query(otherRealm, "shoes")));
+    assertEquals(3, searcher.sent.get());
+  }
+
+  @Test
+  public void testRealTimeGetIsNotCached() {
+    searcher.setResponseCache(new CaffeineResponseCache(100, 1, TimeUnit.MINUTES));
+    for (int i = 0; i < 2; i++) {
+      QueryBuilder builder = searcher.createQueryBuilder(realm);
+      builder.lookupByKeys(1L, 2L);
+      searcher.execute(builder);
+    }
+    assertEquals(2, searcher.sent.get());
+  }
+
+  private void awaitWaiting(Thread thread) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + 5000;
+    while (thread.getState() != Thread.State.WAITING) {
+      if (System.currentTimeMillis() > deadline) {
+        fail(thread + " didn't wait for the running query");
+      }
+      Thread.sleep(1);
+    }
+  }
+
+  @Test
+  public void testIdenticalQueriesAreCoalesced() throws Exception {
+    searcher.gate = new CountDownLatch(1);
+    Future<QueryResponse> first = executor.submit(() -> searcher.execute(query(realm, "shoes")));
+    assertTrue(searcher.entered.await(5, TimeUnit.SECONDS));
+
+    Thread[] waiter = new Thread[1];
+    Future<QueryResponse> second = executor.submit(() -> {
+      waiter[0] = Thread.currentThread();
+      return searcher.execute(query(realm, "shoes"));
+    });
+    while (waiter[0] == null) {
+      Thread.sleep(1);
+    }
+    awaitWaiting(waiter[0]);
+    searcher.gate.countDown();
+
+    assertSame(first.get(5, TimeUnit.SECONDS), second.get(5, TimeUnit.SECONDS));
+    assertEquals(1, searcher.sent.get());
+
+    // Nothing is left in flight
+    searcher.execute(query(realm, "shoes"));
+    assertEquals(2, searcher.sent.get());
+  }
+
+  @Test
+  public void testWaitersSeeTheFailure() throws Exception {
+    searcher.gate = new CountDownLatch(1);
+    searcher.failing = true;
+    Future<QueryResponse> first = executor.submit(() -> searcher.execute(query(realm, "shoes")));
+    assertTrue(searcher.entered.await(5, TimeUnit.SECONDS));
+
+    Thread[] waiter = new Thread[1];
+    Future<QueryResponse> second = executor.submit(() -> {
+      waiter[0] = Thread.currentThread();
+      return searcher.execute(query(realm, "shoes"));
+    });
+    while (waiter[0] == null) {
+      Thread.sleep(1);
+    }
+    awaitWaiting(waiter[0]);
+    searcher.gate.countDown();
+
+    for (Future<QueryResponse> f : Arrays.asList(first, second)) {
+      try {
+        f.get(5, TimeUnit.SECONDS);
+        fail("The query failed");
+      } catch (ExecutionException expected) {
+        assertTrue(expected.getCause() instanceof RuntimeException);
+        assertTrue(expected.getCause().getCause() instanceof IOException);
+      }
+    }
+    assertEquals(1, searcher.sent.get());
+
+    searcher.failing = false;
+    searcher.gate = null;
+    searcher.execute(query(realm, "shoes"));
+    assertEquals(2, searcher.sent.get());
+  }
+}
@@ -0,0 +1,110 @@
+package org.fiolino.searcher;
+
+import org.apache.solr.client.solrj.SolrQuery;
+import org.fiolino.searcher.fieldhandling.FilterType;
+import org.fiolino.searcher.statement.DirectFilter;
+import org.fiolino.searcher.statement.Filter;
+import org.fiolino.searcher.statement.TermsFilter;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class SchemaSnapshotTest {
+
+  private static Map<String, String> field(String type, String flags) {
+    Map<String, String> info = new HashMap<>();
+    info.put("type", type);
+    info.put("schema", flags);
+    return info;
+  }
+
+  private static SchemaSnapshot createSchema() {
+    Map<String, Map<String, String>> fields = new HashMap<>();
+    fields.put("brand_s", field("string", "I-S-----OF-----l"));
+    fields.put("brands_ss", field("strings", "I-SD-M--OF-----l"));
+    fields.put("category_ids", field("tlongs", "I-SD-M--OF-----l"));
+    fields.put("created_dt", field("pdate", "I-SD----OF-----l"));
+    fields.put("title_t", field("text_general", "ITS-----------l"));
+    fields.put("name_lc", field("lowercase", "ITS-----------l"));
+    return new SchemaSnapshot(fields);
+  }
+
+  @Test
+  public void testUnanalyzed() {
+    SchemaSnapshot schema = createSchema();
+    assertTrue(schema.isUnanalyzed("brand_s"));
+    assertTrue(schema.isUnanalyzed("brands_ss"));
+    assertTrue(schema.isUnanalyzed("category_ids"));
+    assertTrue(schema.isUnanalyzed("created_dt"));
+    assertFalse(schema.isUnanalyzed("title_t"));
+    assertFalse(schema.isUnanalyzed("name_lc"));
+    assertFalse(schema.isUnanalyzed("unknown"));
+  }
+
+  @Test
+  public void testDocValues() {
+    SchemaSnapshot schema = createSchema();
+    assertFalse(schema.hasDocValues("brand_s"));
+    assertTrue(schema.hasDocValues("brands_ss"));
+    assertEquals("tlongs", schema.getFieldType("category_ids"));
+  }
+
+  @Test
+  public void testSucceeding() {
+    SchemaSnapshot first = createSchema().succeeding(SchemaSnapshot.empty());
+    assertEquals(0, first.getVersion());
+    assertSame(first, createSchema().succeeding(first));
+    Map<String, Map<String, String>> fields = new HashMap<>();
+    fields.put("brand_s", field("string", "I-S-----OF-----l"));
+    assertEquals(1, new SchemaSnapshot(fields).succeeding(first).getVersion());
+  }
+
+  private static Object[] values(int n) {
+    Object[] values = new Object[n];
+    for (int i = 0; i < n; i++) {
+      values[i] = "v" + i;
+    }
+    return values;
+  }
+
+  private static String render(Filter f) {
+    SolrQuery q = new SolrQuery();
+    f.apply(q, new StringBuilder());
+    return q.getFilterQueries()[0];
+  }
+
+  @Test
+  public void testTermsThreshold() {
+    SchemaSnapshot schema = createSchema();
+    FilterType<String> type = new FilterType<>("brands_ss", "brand", String.class, "brand");
+    int threshold = type.getTermsThreshold();
+    assertTrue(type.make(schema, values(threshold - 1)) instanceof DirectFilter);
+    Filter terms = type.make(schema, values(threshold));
+    assertTrue(terms instanceof TermsFilter);
+    assertTrue(render(terms), render(terms).contains("{!terms f=brands_ss"));
+    assertTrue(type.make(schema, values(500)) instanceof TermsFilter);
+    assertTrue(render(type.make(schema, values(600))).contains("method=docValuesTermsFilter"));
+  }
+
+  @Test
+  public void testNoTermsOnAnalyzedFields() {
+    SchemaSnapshot schema = createSchema();
+    FilterType<String> type = new FilterType<>("title_t", "title", String.class, "title");
+    assertTrue(type.make(schema, values(1000)) instanceof DirectFilter);
+    assertTrue(type.make(SchemaSnapshot.empty(), values(1000)) instanceof DirectFilter);
+  }
+
+  @Test
+  public void testNoTermsWithNullValues() {
+    FilterType<String> type = new FilterType<>("brand_s", "brand", String.class, "brand");
+    Object[] values = values(100);
+    values[50] = null;
+    assertTrue(type.make(createSchema(), values) instanceof DirectFilter);
+  }
+}
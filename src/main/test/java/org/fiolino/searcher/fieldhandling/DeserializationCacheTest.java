@@ -0,0 +1,113 @@
+package org.fiolino.searcher.fieldhandling;
+
+import org.junit.Test;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.lang.invoke.MethodType.methodType;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class DeserializationCacheTest {
+
+  private static final AtomicInteger parsed = new AtomicInteger();
+
+  public static final class Brand {
+    private final long id;
+    private final String name;
+
+    Brand(long id, String name) {
+      this.id = id;
+      this.name = name;
+    }
+  }
+
+  public static class MutableBrand {
+    private String name;
+  }
+
+  @Immutable
+  public static class MarkedBrand {
+    private String name;
+  }
+
+  public static final class BrandWithList {
+    private final List<String> names = null;
+  }
+
+  @SuppressWarnings("unused")
+  private static Brand parse(String serialized) {
+    if (serialized == null) {
+      return null;
+    }
+    parsed.incrementAndGet();
+    int colon = serialized.indexOf(':');
+    return new Brand(Long.parseLong(serialized.substring(0, colon)), serialized.substring(colon + 1));
+  }
+
+  private static MethodHandle createDeserializer() throws ReflectiveOperationException {
+    return MethodHandles.lookup().findStatic(DeserializationCacheTest.class, "parse",
+            methodType(Brand.class, String.class));
+  }
+
+  @Test
+  public void testHitsAndMisses() throws Throwable {
+    DeserializationCache cache = new DeserializationCache(Brand.class, 10);
+    MethodHandle cached = cache.cached(createDeserializer());
+    assertEquals(methodType(Brand.class, String.class), cached.type());
+
+    parsed.set(0);
+    Brand first = (Brand) cached.invokeExact("1:Acme");
+    Brand second = (Brand) cached.invokeExact("1:Acme");
+    Brand other = (Brand) cached.invokeExact("2:Other");
+    assertSame(first, second);
+    assertNotSame(first, other);
+    assertEquals("Acme", first.name);
+    assertEquals(2L, other.id);
+    assertEquals(2, parsed.get());
+    assertEquals(1, cache.getStats().hitCount());
+    assertEquals(2, cache.getStats().missCount());
+    assertEquals(2, cache.getSize());
+  }
+
+  @Test
+  public void testNullIsNotCached() throws Throwable {
+    DeserializationCache cache = new DeserializationCache(Brand.class, 10);
+    MethodHandle cached = cache.cached(createDeserializer());
+    Brand b = (Brand) cached.invokeExact((String) null);
+    assertNull(b);
+    assertEquals(0, cache.getSize());
+  }
+
+  @Test
+  public void testSizeIsBounded() throws Throwable {
+    DeserializationCache cache = new DeserializationCache(Brand.class, 5);
+    MethodHandle cached = cache.cached(createDeserializer());
+    for (int i = 0; i < 100; i++) {
+      Brand b = (Brand) cached.invokeExact(i + ":Brand " + i);
+      assertEquals(i, b.id);
+    }
+    assertTrue(String.valueOf(cache.getSize()), cache.getSize() <= 5);
+  }
+
+  @Test
+  public void testCanShare() {
+    assertTrue(DeserializationCache.canShare(String.class));
+    assertTrue(DeserializationCache.canShare(Brand.class));
+    assertTrue(DeserializationCache.canShare(MarkedBrand.class));
+    assertFalse(DeserializationCache.canShare(MutableBrand.class));
+    assertFalse(DeserializationCache.canShare(BrandWithList.class));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testRejectsMutableTypes() {
+    new DeserializationCache(MutableBrand.class, 10);
+  }
+}
@@ -0,0 +1,45 @@
+package org.fiolino.searcher.searcher;
+
+import org.apache.solr.client.solrj.response.QueryResponse;
+import org.apache.solr.common.params.ModifiableSolrParams;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class CaffeineResponseCacheTest {
+
+  private CaffeineResponseCache cache;
+
+  @Before
+  public void setUp() {
+    cache = new CaffeineResponseCache(100, 1, TimeUnit.MINUTES);
+  }
+
+  private static QueryKey key(String query) {
+    return QueryKey.of(null, new ModifiableSolrParams().add("q", query));
+  }
+
+  @Test
+  public void testHitAndMiss() {
+    QueryResponse response = new QueryResponse();
+    assertNull(cache.getIfPresent(key("a")));
+    cache.put(key("a"), response);
+    assertSame(response, cache.getIfPresent(key("a")));
+    assertNull(cache.getIfPresent(key("b")));
+    assertEquals(1, cache.getHitCount());
+    assertEquals(2, cache.getMissCount());
+  }
+
+  @Test
+  public void testExpires() throws InterruptedException {
+    cache = new CaffeineResponseCache(100, 10, TimeUnit.MILLISECONDS);
+    cache.put(key("a"), new QueryResponse());
+    Thread.sleep(50);
+    assertNull(cache.getIfPresent(key("a")));
+  }
+}
@@ -0,0 +1,113 @@
+package org.fiolino.searcher.searcher;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class IdBatchSizerTest {
+
+  private static Long[] ids(int n, long first) {
+    Long[] ids = new Long[n];
+    for (int i = 0; i < n; i++) {
+      ids[i] = first + i;
+    }
+    return ids;
+  }
+
+  private static void record(IdBatchSizer sizer, int batchSize, double millis) {
+    sizer.record(batchSize, (long) (millis * TimeUnit.MILLISECONDS.toNanos(1)));
+  }
+
+  @Test
+  public void testInitialSize() {
+    IdBatchSizer sizer = new IdBatchSizer(100);
+    assertEquals(100, sizer.currentBatchSize());
+    Long[] ids = ids(80, 1);
+    assertSame(ids, sizer.split(ids).get(0));
+  }
+
+  @Test
+  public void testSplitKeepsOrder() {
+    IdBatchSizer sizer = new IdBatchSizer(100);
+    Long[] ids = ids(250, 1);
+    List<Long[]> batches = sizer.split(ids);
+    assertEquals(3, batches.size());
+    assertEquals(100, batches.get(0).length);
+    assertEquals(100, batches.get(1).length);
+    assertEquals(50, batches.get(2).length);
+    List<Long> joined = new ArrayList<>();
+    for (Long[] b : batches) {
+      joined.addAll(Arrays.asList(b));
+    }
+    assertArrayEquals(ids, joined.toArray());
+  }
+
+  @Test
+  public void testSplitByUrlLength() {
+    IdBatchSizer sizer = new IdBatchSizer(1000);
+    // 19 digits and a comma each, so about 200 fit into the URL
+    Long[] ids = ids(1000, 1000000000000000000L);
+    List<Long[]> batches = sizer.split(ids);
+    assertTrue(String.valueOf(batches.size()), batches.size() >= 5);
+    int total = 0;
+    for (Long[] b : batches) {
+      assertTrue(String.valueOf(b.length), b.length * 20 <= 4096);
+      total += b.length;
+    }
+    assertEquals(1000, total);
+  }
+
+  @Test
+  public void testProbeFactor() {
+    IdBatchSizer slow = new IdBatchSizer(100);
+    record(slow, 100, 1000.0);
+    assertEquals(50, slow.currentBatchSize());
+
+    IdBatchSizer fast = new IdBatchSizer(100);
+    record(fast, 100, 10.0);
+    assertEquals(200, fast.currentBatchSize());
+
+    IdBatchSizer onTarget = new IdBatchSizer(100);
+    record(onTarget, 100, 125.0);
+    assertEquals(200, onTarget.currentBatchSize());
+  }
+
+  @Test
+  public void testFitsOverheadAndTimePerId() {
+    IdBatchSizer sizer = new IdBatchSizer(100);
+    // 20ms per request and 0.5ms per id; the target of 250ms is reached with 460 ids
+    for (int i = 0; i < 50; i++) {
+      int n = 100 + (i % 4) * 100;
+      record(sizer, n, 20.0 + 0.5 * n);
+    }
+    assertEquals(460, sizer.currentBatchSize(), 2);
+  }
+
+  @Test
+  public void testLargeOverheadUsesLargestBatches() {
+    IdBatchSizer sizer = new IdBatchSizer(100);
+    for (int i = 0; i < 50; i++) {
+      int n = 100 + (i % 2) * 100;
+      record(sizer, n, 300.0 + 0.01 * n);
+    }
+    assertEquals(1000, sizer.currentBatchSize());
+  }
+
+  @Test
+  public void testMinimumSize() {
+    IdBatchSizer sizer = new IdBatchSizer(100);
+    for (int i = 0; i < 50; i++) {
+      int n = 100 + (i % 2) * 100;
+      record(sizer, n, 100.0 * n);
+    }
+    assertEquals(10, sizer.currentBatchSize());
+  }
+}
@@ -0,0 +1,49 @@
+package org.fiolino.searcher.searcher;
+
+import org.apache.solr.common.params.ModifiableSolrParams;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+public class QueryKeyTest {
+
+  private static ModifiableSolrParams params(String... nameValuePairs) {
+    ModifiableSolrParams params = new ModifiableSolrParams();
+    for (int i = 0; i < nameValuePairs.length; i += 2) {
+      params.add(nameValuePairs[i], nameValuePairs[i + 1]);
+    }
+    return params;
+  }
+
+  @Test
+  public void testParameterOrderDoesNotMatter() {
+    QueryKey first = QueryKey.of(null, params("q", "*:*", "rows", "10", "fl", "id"));
+    QueryKey second = QueryKey.of(null, params("fl", "id", "rows", "10", "q", "*:*"));
+    assertEquals(first, second);
+    assertEquals(first.hashCode(), second.hashCode());
+  }
+
+  @Test
+  public void testFilterQueryOrderDoesNotMatter() {
+    QueryKey first = QueryKey.of(null, params("q", "*:*", "fq", "brand:a", "fq", "color:red"));
+    QueryKey second = QueryKey.of(null, params("fq", "color:red", "q", "*:*", "fq", "brand:a"));
+    assertEquals(first, second);
+  }
+
+  @Test
+  public void testOtherValueOrderMatters() {
+    // The order of sort criteria and facet fields does change the response
+    assertNotEquals(QueryKey.of(null, params("sort", "a asc", "sort", "b asc")),
+            QueryKey.of(null, params("sort", "b asc", "sort", "a asc")));
+    assertNotEquals(QueryKey.of(null, params("facet.field", "a", "facet.field", "b")),
+            QueryKey.of(null, params("facet.field", "b", "facet.field", "a")));
+  }
+
+  @Test
+  public void testValuesAreNotConfused() {
+    assertNotEquals(QueryKey.of(null, params("q", "a&fq=1:b")), QueryKey.of(null, params("q", "a", "fq", "b")));
+    assertNotEquals(QueryKey.of(null, params("q", "a")), QueryKey.of(null, params("q", "b")));
+    assertNotEquals(QueryKey.of(null, params("fq", "a")), QueryKey.of(null, params("fq", "a", "fq", "a")));
+  }
+}
@@ -0,0 +1,147 @@
+package org.fiolino.searcher.statement;
+
+import org.apache.solr.client.solrj.SolrQuery;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class FilterTest {
+
+  private static String render(Filter f) {
+    SolrQuery q = new SolrQuery();
+    f.apply(q, new StringBuilder());
+    return q.getFilterQueries()[0];
+  }
+
+  private static List<String> renderSplit(Filter f) {
+    SolrQuery q = new SolrQuery();
+    for (Filter part : f.canonicalize().split()) {
+      part.apply(q, new StringBuilder());
+    }
+    return Arrays.asList(q.getFilterQueries());
+  }
+
+  private static Object[] ids(int n) {
+    Object[] ids = new Object[n];
+    for (int i = 0; i < n; i++) {
+      ids[i] = (long) i;
+    }
+    return ids;
+  }
+
+  @Test
+  public void testValueOrderDoesNotMatter() {
+    Filter ba = new DirectFilter("brand", "brand", "b", "a");
+    Filter ab = new DirectFilter("brand", "brand", "a", "b");
+    assertEquals(render(ab.canonicalize()), render(ba.canonicalize()));
+    assertSame(ab, ab.canonicalize());
+  }
+
+  @Test
+  public void testCanonicalValuesFastPath() {
+    Object[] single = {"a"};
+    assertSame(single, Filter.canonicalValues(single));
+    Object[] ordered = {1L, 2L, 10L};
+    assertSame(ordered, Filter.canonicalValues(ordered));
+    Filter f = new TermsFilter("id", "ids", ids(1000));
+    assertSame(f, f.canonicalize());
+  }
+
+  @Test
+  public void testCanonicalValues() {
+    assertArrayEquals(new Object[] {9, 10}, Filter.canonicalValues(new Object[] {10, 9, 9}));
+    assertArrayEquals(new Object[] {"a", "b", "c"},
+            Filter.canonicalValues(new Object[] {"c", Arrays.asList("b", "a"), "a"}));
+    assertNull(Filter.canonicalValues(new Object[] {"b", null, "a"}));
+    assertNull(Filter.canonicalValues(new Object[] {Arrays.asList("b", null)}));
+  }
+
+  @Test
+  public void testFlattensNestedAnd() {
+    Filter a = new DirectFilter("brand", "brand", "a");
+    Filter b = new DirectFilter("color", "color", "red");
+    Filter c = new DirectFilter("size", "size", 10, 9);
+    assertEquals(render(a.and(b.and(c)).canonicalize()), render(c.and(a).and(b).canonicalize()));
+    assertEquals(render(a.and(b).canonicalize()), render(a.and(b).and(a).canonicalize()));
+  }
+
+  @Test
+  public void testFlattensNestedOr() {
+    Filter a = new DirectFilter("brand", "brand", "a");
+    Filter b = new DirectFilter("color", "color", "red");
+    Filter c = new DirectFilter("size", "size", 10, 9);
+    String canonical = render(a.or(b.or(c)).canonicalize());
+    assertEquals(canonical, render(c.or(b).or(a).canonicalize()));
+    assertEquals(canonical, render(b.or(c.or(a)).canonicalize()));
+    assertSame(a, a.or(a).canonicalize());
+  }
+
+  @Test
+  public void testKeepsOrderWithCompoundOperands() {
+    Filter a = new DirectFilter("brand", "brand", "a");
+    Filter b = new DirectFilter("color", "color", "red");
+    Filter c = new DirectFilter("size", "size", 9);
+    Filter first = c.or(a.and(b));
+    assertEquals(render(first), render(first.canonicalize()));
+    Filter second = a.and(b).or(c);
+    assertEquals(render(second), render(second.canonicalize()));
+  }
+
+  @Test
+  public void testCanonicalFormIsKept() {
+    Filter a = new DirectFilter("brand", "brand", "b", "a");
+    Filter b = new DirectFilter("color", "color", "red");
+    Filter and = b.and(a);
+    Filter canonical = and.canonicalize();
+    assertNotSame(and, canonical);
+    assertSame(canonical, and.canonicalize());
+    assertSame(canonical, canonical.canonicalize());
+  }
+
+  @Test
+  public void testSplitKeepsTags() {
+    Filter a = new DirectFilter("brand", "brand", "a");
+    Filter b = new DirectFilter("color", "color", "red");
+    List<String> parts = renderSplit(a.and(b));
+    assertEquals(2, parts.size());
+    assertTrue(parts.toString(), parts.get(0).startsWith("{!tag=brand}"));
+    assertTrue(parts.toString(), parts.get(1).startsWith("{!tag=color}"));
+  }
+
+  @Test
+  public void testSplitMarksLargeFiltersUncached() {
+    Filter a = new DirectFilter("brand", "brand", "a");
+    Filter many = new TermsFilter("id", "ids", Cardinality.MANY, ids(100));
+    Filter large = new DirectFilter("size", "size", ids(Filter.MAX_CACHED_VALUES + 1));
+    List<String> parts = renderSplit(a.and(many).and(large));
+    assertEquals(3, parts.size());
+    assertTrue(parts.toString(), parts.contains(render(a)));
+    assertTrue(parts.toString(), parts.contains(render(many.withCost(99))));
+    assertTrue(parts.toString(), parts.contains(render(large.withCost(Filter.MAX_CACHED_VALUES + 1))));
+    assertTrue(render(many.withCost(99)), render(many.withCost(99)).startsWith("{!tag=ids cache=false cost=99}"));
+  }
+
+  @Test
+  public void testSplitKeepsUncachedFiltersTogether() {
+    Filter a = new DirectFilter("brand", "brand", Cardinality.MANY, "a");
+    Filter many = new TermsFilter("id", "ids", Cardinality.MANY, ids(100));
+    List<String> parts = renderSplit(a.and(many));
+    assertEquals(1, parts.size());
+    assertTrue(parts.get(0), parts.get(0).startsWith("{!cache=false cost=99}"));
+  }
+
+  @Test
+  public void testOrIsNotSplit() {
+    Filter a = new DirectFilter("brand", "brand", "a");
+    Filter b = new DirectFilter("color", "color", "red");
+    assertEquals(1, renderSplit(a.or(b)).size());
+  }
+}
@@ -0,0 +1,32 @@
+package org.fiolino.searcher.statement;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class TermsMethodTest {
+
+  private enum Color { RED, GREEN }
+
+  @Test
+  public void testBooleansAndEnums() {
+    assertEquals(TermsMethod.BOOLEAN_QUERY, TermsMethod.choose(Boolean.class, true, 2));
+    assertEquals(TermsMethod.BOOLEAN_QUERY, TermsMethod.choose(Color.class, false, 1000));
+  }
+
+  @Test
+  public void testNumbersNeverUseDocValues() {
+    assertEquals(TermsMethod.TERMS_FILTER, TermsMethod.choose(Long.class, true, 10000));
+    assertEquals(TermsMethod.TERMS_FILTER, TermsMethod.choose(Integer.class, false, 32));
+  }
+
+  @Test
+  public void testStrings() {
+    assertEquals(TermsMethod.TERMS_FILTER, TermsMethod.choose(String.class, true, TermsMethod.AUTOMATON_MIN_VALUES - 1));
+    assertEquals(TermsMethod.AUTOMATON, TermsMethod.choose(String.class, true, TermsMethod.AUTOMATON_MIN_VALUES));
+    assertEquals(TermsMethod.AUTOMATON, TermsMethod.choose(String.class, true, TermsMethod.DOC_VALUES_MIN_VALUES - 1));
+    assertEquals(TermsMethod.DOC_VALUES_TERMS_FILTER,
+            TermsMethod.choose(String.class, true, TermsMethod.DOC_VALUES_MIN_VALUES));
+    assertEquals(TermsMethod.AUTOMATON, TermsMethod.choose(String.class, false, TermsMethod.DOC_VALUES_MIN_VALUES));
+  }
+}